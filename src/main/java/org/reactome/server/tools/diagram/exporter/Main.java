@@ -17,6 +17,7 @@ import org.reactome.server.tools.diagram.exporter.common.profiles.factory.Diagra
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramJsonNotFoundException;
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramProfileException;
 import org.reactome.server.tools.diagram.exporter.pptx.PowerPointExporter;
+import org.reactome.server.tools.diagram.exporter.raster.PdfBook;
 import org.reactome.server.tools.diagram.exporter.raster.RasterExporter;
 import org.reactome.server.tools.diagram.exporter.raster.api.RasterArgs;
 import org.reactome.server.tools.diagram.exporter.raster.ehld.exception.EhldException;
@@ -32,9 +33,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Main class for the diagram exporter project
@@ -44,16 +49,16 @@ public class Main {
 
     private static final Logger logger = LoggerFactory.getLogger("diagram-exporter");
 
-    private enum Format {PPTX, SVG, PNG, JPEG, JPG, GIF, SBGN}
+    private enum Format {PPTX, SVG, SVGZ, PNG, JPEG, JPG, GIF, PDF, SBGN}
 
     public static boolean verbose;
 
-    public static void main(String[] args) throws JSAPException, DiagramProfileException, DiagramJsonNotFoundException, DiagramJsonDeserializationException {
+    public static void main(String[] args) throws JSAPException {
         // Program Arguments -i, -p, -o, -j, -f and -s
-        SimpleJSAP jsap = new SimpleJSAP(Main.class.getName(), "Exports the requested pathway diagrams to different formats (svg, png, sbgn, pptx, gif, jpeg)",
+        SimpleJSAP jsap = new SimpleJSAP(Main.class.getName(), "Exports the requested pathway diagrams to different formats (svg, svgz, png, sbgn, pptx, gif, jpeg, pdf)",
                 new Parameter[]{
                         new FlaggedOption("target",   JSAP.STRING_PARSER, null,        JSAP.REQUIRED,    't', "target",  "Target pathways to convert. Use either comma separated IDs, pathways for a given species (e.g. 'Homo sapiens') or 'all' for every pathway").setList(true).setListSeparator(','),
-                        new FlaggedOption(  "format",   JSAP.STRING_PARSER, null,        JSAP.REQUIRED,    'f', "format",  "Format of the output files (svg, png, sbgn, pptx, gif, jpeg)"),
+                        new FlaggedOption(  "format",   JSAP.STRING_PARSER, null,        JSAP.REQUIRED,    'f', "format",  "Format of the output files (svg, svgz, png, sbgn, pptx, gif, jpeg, pdf)"),
                         new FlaggedOption(  "output",   JSAP.STRING_PARSER, null,        JSAP.REQUIRED,    'o', "output",  "The output folder"),
                         new FlaggedOption(  "input",    JSAP.STRING_PARSER, null,        JSAP.REQUIRED,    'i', "input",   "The input folder containing the diagram json files"),
 
@@ -69,6 +74,8 @@ public class Main {
 
                         new FlaggedOption(  "profile",  JSAP.STRING_PARSER, "Modern",    JSAP.NOT_REQUIRED,'c', "profile", "The colour diagram [Modern or Standard]"),
                         new FlaggedOption(  "license",  JSAP.STRING_PARSER, null,        JSAP.NOT_REQUIRED,'l', "license", "Software License file"),
+                        new FlaggedOption(  "threads",  JSAP.INTEGER_PARSER,"1",         JSAP.NOT_REQUIRED,JSAP.NO_SHORTFLAG, "threads", "Number of pathways exported in parallel"),
+                        new Switch(         "book",                                                   JSAP.NO_SHORTFLAG, "book",    "With pdf format, exports every target diagram as a page of a single file"),
 
                         new QualifiedSwitch("verbose",  JSAP.BOOLEAN_PARSER,null,        JSAP.NOT_REQUIRED,'v', "verbose", "Requests verbose output.")
                 }
@@ -79,6 +86,12 @@ public class Main {
 
         verbose = config.getBoolean("verbose");
 
+        int threads = config.getInt("threads");
+        if (threads < 1) {
+            System.err.printf("'%d' is not a valid number of threads%n", threads);
+            System.exit(1);
+        }
+
         //Initialising ReactomeCore Neo4j configuration
         ReactomeGraphCore.initialise(config.getString("host"), config.getString("user"), config.getString("password"), config.getString("name"));
 
@@ -108,19 +121,25 @@ public class Main {
             switch (format) {
                 case PPTX:
                     String lic = config.getString("license");
-                    counter = generatePPTX(targets, input, output, profile, lic);
+                    counter = generatePPTX(targets, input, output, profile, lic, threads);
                     break;
                 case SVG:
+                case SVGZ:
                 case PNG:
                 case JPEG:
                 case JPG:
                 case GIF:
+                case PDF:
+                    if (format == Format.PDF && config.getBoolean("book")) {
+                        counter = generateBook(targets, profile, input, output, config.getStringArray("target"));
+                        break;
+                    }
                     File ehlds = getEhldsFolder(config.getString("ehlds"));
                     File ehldSummary = getEhldSummaryFile(config.getString("summary"));
-                    counter = generateImage(targets, format, profile, input, output, ehlds, ehldSummary);
+                    counter = generateImage(targets, format, profile, input, output, ehlds, ehldSummary, threads);
                     break;
                 case SBGN:
-                    counter = generateSBGN(targets, input, output);
+                    counter = generateSBGN(targets, input, output, threads);
                     break;
             }
             Long time = System.currentTimeMillis() - start;
@@ -137,65 +156,129 @@ public class Main {
         System.exit(0);
     }
 
-    private static int generatePPTX(Collection<Pathway> target, File input, File output, String colourProfile, String lic) throws DiagramProfileException, DiagramJsonDeserializationException, DiagramJsonNotFoundException {
-        int total = target.size();
-        int counter = 0;
-        for (Pathway pathway : target) {
-            String name = pathway.getStId() + ".pptx";
-            ProgressBar.updateProgressBar(name, counter, total);
-            File finalPptx = PowerPointExporter.export(pathway.getStId(), input.getAbsolutePath(), colourProfile, output.getPath(), new Decorator(), lic);
-            if (finalPptx.exists()) {
-                counter++;
-            } else {
+    private static int generatePPTX(Collection<Pathway> target, File input, File output, String colourProfile, String lic, int threads) {
+        return export(target, "pptx", threads, pathway -> {
+            try {
+                File finalPptx = PowerPointExporter.export(pathway.getStId(), input.getAbsolutePath(), colourProfile, output.getPath(), new Decorator(), lic);
+                if (finalPptx.exists()) return true;
                 logger.error("Cannot generate the PPTX file for " + pathway.getStId());
+            } catch (DiagramProfileException | DiagramJsonDeserializationException | DiagramJsonNotFoundException e) {
+                logger.error("Cannot generate the PPTX file for " + pathway.getStId(), e);
             }
-        }
-        ProgressBar.done(total);
-        return counter;
+            return false;
+        });
     }
 
-    private static int generateImage(Collection<Pathway> target, Format format, String colourProfile, File input, File output, File ehlds, File ehldSummary) {
-        RasterExporter rasterExporter = new RasterExporter(input.getAbsolutePath(), ehlds.getAbsolutePath(), null, ehldSummary.getAbsolutePath());
+    private static int generateImage(Collection<Pathway> target, Format format, String colourProfile, File input, File output, File ehlds, File ehldSummary, int threads) {
+        final RasterExporter rasterExporter = new RasterExporter(input.getAbsolutePath(), ehlds.getAbsolutePath(), null, ehldSummary.getAbsolutePath());
 
-        int total = target.size();
-        int counter = 0;
-        for (Pathway pathway : target) {
-            String name = pathway.getStId() + "." + format.name().toLowerCase();
-            ProgressBar.updateProgressBar(name, counter, total);
-            final RasterArgs args = new RasterArgs(pathway.getStId(), format.name().toLowerCase());
+        final String ext = format.name().toLowerCase();
+        return export(target, ext, threads, pathway -> {
+            final RasterArgs args = new RasterArgs(pathway.getStId(), ext);
             args.setProfiles(new ColorProfiles(colourProfile, null, null));
             args.setWriteTitle(true);
 
-            File file = new File(output.getAbsolutePath() + "/" + name);
-            try {
-                rasterExporter.export(args, new FileOutputStream(file));
-                if (file.exists()) counter++;
+            File file = new File(output.getAbsolutePath() + "/" + pathway.getStId() + "." + ext);
+            try (OutputStream os = new FileOutputStream(file)) {
+                rasterExporter.export(args, os);
             } catch (EhldException | AnalysisException | DiagramJsonDeserializationException | DiagramJsonNotFoundException | IOException | TranscoderException e) {
                 logger.error("Cannot generate the " + format + " file for " + pathway.getStId(), e);
+                return false;
+            }
+            return file.exists();
+        });
+    }
+
+    /**
+     * Exports every target diagram as a page of one pdf file. Pages are written in the target order, so this
+     * runs in a single thread.
+     */
+    private static int generateBook(Collection<Pathway> target, String colourProfile, File input, File output, String[] targetArgs) {
+        final RasterExporter rasterExporter = new RasterExporter(input.getAbsolutePath(), null, null, null);
+        final String name = String.join("_", targetArgs).replaceAll("[^\\w.-]+", "_") + ".pdf";
+        final File file = new File(output.getAbsolutePath() + "/" + name);
+        int total = target.size();
+        int processed = 0;
+        int counter = 0;
+        // the stream is closed even if the book cannot be created
+        try (OutputStream os = new FileOutputStream(file); PdfBook book = rasterExporter.createPdfBook(os)) {
+            for (Pathway pathway : target) {
+                ProgressBar.updateProgressBar(name, processed, total);
+                final RasterArgs args = new RasterArgs(pathway.getStId(), "pdf");
+                args.setProfiles(new ColorProfiles(colourProfile, null, null));
+                args.setWriteTitle(true);
+                try {
+                    rasterExporter.addToPdfBook(book, args);
+                    counter++;
+                } catch (AnalysisException | DiagramJsonDeserializationException | DiagramJsonNotFoundException | RuntimeException e) {
+                    logger.error("Cannot add " + pathway.getStId() + " to " + name, e);
+                }
+                ProgressBar.updateProgressBar(name, ++processed, total);
             }
+        } catch (IOException e) {
+            logger.error("Cannot generate " + name, e);
+            return 0;
         }
         ProgressBar.done(total);
         return counter;
     }
 
-    private static int generateSBGN(Collection<Pathway> target, File input, File output){
-        int total = target.size();
-        int counter = 0;
-        for (Pathway pathway : target) {
-            String name = pathway.getStId() + ".sbgn";
-            ProgressBar.updateProgressBar(name, counter, total);
+    private static int generateSBGN(Collection<Pathway> target, File input, File output, int threads) {
+        return export(target, "sbgn", threads, pathway -> {
             try {
                 //noinspection ConstantConditions
                 SbgnConverter converter = new SbgnConverter(getDiagram(pathway, input));
-                File sbgn = new File(output.getAbsolutePath() + "/" + name);
+                File sbgn = new File(output.getAbsolutePath() + "/" + pathway.getStId() + ".sbgn");
                 SbgnUtil.writeToFile(converter.getSbgn(), sbgn);
-                counter++;
+                return true;
             } catch (JAXBException | NullPointerException e) {
                 logger.error("Cannot generate the SBGN file for " + pathway.getStId(), e);
+                return false;
             }
+        });
+    }
+
+    /**
+     * Runs the exporter for every target pathway using a pool of the given number of threads. Pathways are
+     * submitted in the target order and the progress bar is updated as they finish.
+     *
+     * @return the number of pathways successfully exported
+     */
+    private static int export(Collection<Pathway> target, String extension, int threads, PathwayExporter exporter) {
+        int total = target.size();
+        final AtomicInteger counter = new AtomicInteger();
+        final AtomicInteger processed = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, total)));
+        for (Pathway pathway : target) {
+            executor.execute(() -> {
+                String name = pathway.getStId() + "." + extension;
+                ProgressBar.updateProgressBar(name, processed.get(), total);
+                try {
+                    if (exporter.export(pathway)) counter.incrementAndGet();
+                } catch (RuntimeException e) {
+                    logger.error("Cannot generate the " + extension + " file for " + pathway.getStId(), e);
+                }
+                ProgressBar.updateProgressBar(name, processed.incrementAndGet(), total);
+            });
+        }
+        executor.shutdown();
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
         }
         ProgressBar.done(total);
-        return counter;
+        return counter.get();
+    }
+
+    @FunctionalInterface
+    private interface PathwayExporter {
+        /**
+         * @return true if the pathway has been exported
+         */
+        boolean export(Pathway pathway);
     }
 
     private static Collection<Pathway> getTargets(String[] target) {
@@ -8,9 +8,13 @@ import org.reactome.server.tools.diagram.data.exception.DeserializationException
 import org.reactome.server.tools.diagram.data.graph.Graph;
 import org.reactome.server.tools.diagram.data.layout.Diagram;
 import org.reactome.server.tools.diagram.data.profile.diagram.DiagramProfile;
+import org.reactome.server.tools.diagram.exporter.common.cache.CacheStats;
+import org.reactome.server.tools.diagram.exporter.common.cache.LruResourceCache;
+import org.reactome.server.tools.diagram.exporter.common.cache.ResourceCache;
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramJsonDeserializationException;
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramJsonNotFoundException;
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramProfileException;
+import org.reactome.server.tools.diagram.exporter.raster.ehld.EhldTemplate;
 import org.reactome.server.tools.diagram.exporter.raster.ehld.exception.EhldException;
 import org.reactome.server.tools.diagram.exporter.raster.ehld.exception.EhldMalformedException;
 import org.reactome.server.tools.diagram.exporter.raster.ehld.exception.EhldNotFoundException;
@@ -18,16 +22,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.svg.SVGDocument;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
- * Provides access to project resources: diagrams, graphs and color profiles.
+ * Provides access to project resources: diagrams, graphs, EHLDs and color
+ * profiles. Diagrams, graphs and EHLDs are kept in a {@link ResourceCache},
+ * and parsed again only when their file changes.
  *
  * @author Lorente-Arencibia, Pascual (pasculorente@gmail.com)
  */
@@ -36,7 +42,43 @@ public class ResourcesFactory {
 	private static final Logger logger = LoggerFactory.getLogger("diagram-exporter");
 
 	private static final String DEFAULT_DIAGRAM_PROFILE = "modern";
-	private static final SAXSVGDocumentFactory DOCUMENT_FACTORY = new SAXSVGDocumentFactory(XMLResourceDescriptor.getXMLParserClassName());
+	/**
+	 * SAXSVGDocumentFactory is not thread safe
+	 */
+	private static final ThreadLocal<SAXSVGDocumentFactory> DOCUMENT_FACTORY = ThreadLocal.withInitial(() ->
+			new SAXSVGDocumentFactory(XMLResourceDescriptor.getXMLParserClassName()));
+	private static final long DEFAULT_CACHE_SIZE = 128L * 1024 * 1024;
+	/**
+	 * Parsed diagrams and graphs take roughly this many times the size of
+	 * their JSON
+	 */
+	private static final int JSON_WEIGHT_FACTOR = 4;
+	/**
+	 * Parsed EHLDs take roughly this many times the size of their SVG
+	 */
+	private static final int EHLD_WEIGHT_FACTOR = 8;
+
+	private static volatile ResourceCache<Path, Object> cache = new LruResourceCache<>(DEFAULT_CACHE_SIZE);
+
+	/**
+	 * Replaces the cache of parsed diagrams, graphs and EHLDs. Files are parsed on
+	 * every request if cache is null.
+	 *
+	 * @param cache the new cache, keyed by absolute file path, or null to
+	 *              disable caching
+	 */
+	public static void setCache(ResourceCache<Path, Object> cache) {
+		ResourcesFactory.cache = cache;
+	}
+
+	/**
+	 * @return usage statistics of the cache of parsed diagrams and graphs, or
+	 * null if there is no cache
+	 */
+	public static CacheStats getCacheStats() {
+		final ResourceCache<Path, Object> cache = ResourcesFactory.cache;
+		return cache == null ? null : cache.getStats();
+	}
 
 	/**
 	 * Loads into memory the DiagramProfile corresponding to getName profile. If
@@ -77,7 +119,8 @@ public class ResourcesFactory {
 	}
 
 	/**
-	 * Creates a new Diagram.
+	 * Gets the Diagram of stId. Diagrams are shared between requests, so they
+	 * must not be modified.
 	 *
 	 * @param diagramPath path where the {stId}.json file is located
 	 * @param stId        stable identifier of the diagram
@@ -93,8 +136,7 @@ public class ResourcesFactory {
 		final Path pathway = Paths.get(diagramPath, stId + ".json");
 		logger.trace("Getting diagram JSON {}", pathway);
 		try {
-			String json = new String(Files.readAllBytes(pathway));
-			return DiagramFactory.getDiagram(json);
+			return load(pathway, DiagramFactory::getDiagram);
 		} catch (DeserializationException e) {
 			logger.error("Could not deserialize diagram json for pathway {}", pathway);
 			throw new DiagramJsonDeserializationException("Could not deserialize diagram json for pathway " + pathway);
@@ -105,7 +147,8 @@ public class ResourcesFactory {
 	}
 
 	/**
-	 * Creates a new Graph.
+	 * Gets the Graph of stId. Graphs are shared between requests, so they
+	 * must not be modified.
 	 *
 	 * @param diagramPath path where the {stId}.graph.json file is located
 	 * @param stId        stable identifier of the diagram
@@ -121,8 +164,7 @@ public class ResourcesFactory {
 		final Path pathway = Paths.get(diagramPath, stId + ".graph.json");
 		logger.trace("Getting graph JSON {}", pathway);
 		try {
-			String json = new String(Files.readAllBytes(pathway));
-			return DiagramFactory.getGraph(json);
+			return load(pathway, DiagramFactory::getGraph);
 		} catch (DeserializationException e) {
 			logger.error("Could not deserialize diagram json for pathway {}", pathway);
 			throw new DiagramJsonDeserializationException("Could not deserialize diagram json for pathway " + pathway);
@@ -132,14 +174,85 @@ public class ResourcesFactory {
 		}
 	}
 
-	public synchronized static SVGDocument getEhld(String ehldPath, String stId) throws EhldException {
-		final File file = new File(ehldPath, stId + ".svg");
-		if (!file.exists())
+	/**
+	 * Returns the cached value for file, if the file has not changed since it
+	 * was cached. Otherwise, it is read and parsed.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T load(Path file, JsonParser<T> parser) throws IOException, DeserializationException {
+		final ResourceCache<Path, Object> cache = ResourcesFactory.cache;
+		if (cache == null) return parser.parse(new String(Files.readAllBytes(file)));
+		final Path key = file.toAbsolutePath().normalize();
+		final BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+		final String version = version(attributes);
+		T value = (T) cache.get(key, version);
+		if (value == null) {
+			value = parser.parse(new String(Files.readAllBytes(key)));
+			cache.put(key, version, value, JSON_WEIGHT_FACTOR * attributes.size());
+		}
+		return value;
+	}
+
+	@FunctionalInterface
+	private interface JsonParser<T> {
+		T parse(String json) throws DeserializationException;
+	}
+
+	/**
+	 * Gets a copy of the EHLD of stId, that can be freely modified.
+	 *
+	 * @param ehldPath path where the {stId}.svg file is located
+	 * @param stId     stable identifier of the diagram
+	 *
+	 * @throws EhldNotFoundException  if the stId has no associated .svg file
+	 * @throws EhldMalformedException if the .svg file cannot be parsed
+	 * @see #getEhldTemplate(String, String)
+	 */
+	public static SVGDocument getEhld(String ehldPath, String stId) throws EhldException {
+		return getEhldTemplate(ehldPath, stId).copy();
+	}
+
+	/**
+	 * Gets the parsed EHLD of stId. Templates are kept in the cache and shared
+	 * between requests, so they must not be modified, use
+	 * {@link EhldTemplate#copy()} instead.
+	 *
+	 * @param ehldPath path where the {stId}.svg file is located
+	 * @param stId     stable identifier of the diagram
+	 *
+	 * @throws EhldNotFoundException  if the stId has no associated .svg file
+	 * @throws EhldMalformedException if the .svg file cannot be parsed
+	 */
+	public static EhldTemplate getEhldTemplate(String ehldPath, String stId) throws EhldException {
+		final Path file = Paths.get(ehldPath, stId + ".svg");
+		if (!Files.exists(file))
 			throw new EhldNotFoundException("EHLD not found for " + stId);
 		try {
-			return DOCUMENT_FACTORY.createSVGDocument(file.getPath());
+			final ResourceCache<Path, Object> cache = ResourcesFactory.cache;
+			if (cache == null) return parseEhld(file);
+			final Path key = file.toAbsolutePath().normalize();
+			final BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+			final String version = version(attributes);
+			EhldTemplate template = (EhldTemplate) cache.get(key, version);
+			if (template == null) {
+				template = parseEhld(key);
+				cache.put(key, version, template, EHLD_WEIGHT_FACTOR * attributes.size());
+			}
+			return template;
 		} catch (IOException e) {
 			throw new EhldMalformedException("EHLD document is not valid " + stId);
 		}
 	}
+
+	private static EhldTemplate parseEhld(Path file) throws IOException {
+		return new EhldTemplate(DOCUMENT_FACTORY.get().createSVGDocument(file.toUri().toString()));
+	}
+
+	/**
+	 * A file with the same modification time and size is considered
+	 * unchanged.
+	 */
+	private static String version(BasicFileAttributes attributes) {
+		return attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+	}
 }
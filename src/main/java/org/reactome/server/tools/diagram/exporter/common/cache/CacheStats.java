@@ -0,0 +1,79 @@
+package org.reactome.server.tools.diagram.exporter.common.cache;
+
+/**
+ * Usage statistics of a {@link ResourceCache}, at a given moment.
+ */
+public class CacheStats {
+
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final int size;
+	private final long weight;
+	private final long maxWeight;
+
+	public CacheStats(long hits, long misses, long evictions, int size, long weight, long maxWeight) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.size = size;
+		this.weight = weight;
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * @return number of times a value was found
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of times a value was not found, or was outdated
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return number of values removed to make room for new ones
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return number of values in the cache
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return estimated size in bytes of the values in the cache
+	 */
+	public long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return max estimated size in bytes of the cache
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * @return hits / (hits + misses), or 0 if the cache was never used
+	 */
+	public double getHitRate() {
+		final long requests = hits + misses;
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("hits=%d, misses=%d (%.1f%%), evictions=%d, size=%d, weight=%d/%d",
+				hits, misses, 100 * getHitRate(), evictions, size, weight, maxWeight);
+	}
+}
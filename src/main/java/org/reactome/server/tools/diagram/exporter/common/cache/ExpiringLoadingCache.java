@@ -0,0 +1,166 @@
+package org.reactome.server.tools.diagram.exporter.common.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of values that are expensive to load and that can disappear from
+ * their source, like analysis results. Values expire a fixed time after they
+ * were loaded, and the least recently used ones are evicted when there are
+ * more than maxSize. Concurrent requests of the same missing key share a
+ * single load. Failed loads are never cached: the exception is thrown to
+ * every thread waiting for that load, and the next request loads again.
+ * <p>
+ * The cache is bounded by the number of values, not by their size, so the
+ * memory it holds is up to maxSize times the largest value. Choose maxSize
+ * from the size of the largest values expected.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ * @param <E> type of the exception thrown when a value cannot be loaded
+ */
+public class ExpiringLoadingCache<K, V, E extends Exception> {
+
+	private final int maxSize;
+	private final Class<E> exceptionType;
+	private final long timeToLive;
+	private final LongSupplier clock;
+	// access order, the eldest entry is the least recently used
+	private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<K, CompletableFuture<V>> loading = new HashMap<>();
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * @param maxSize    max number of values in the cache
+	 * @param timeToLive time a value is kept since it was loaded
+	 * @param unit          unit of timeToLive
+	 * @param exceptionType type of the exception thrown by the loaders
+	 */
+	public ExpiringLoadingCache(int maxSize, long timeToLive, TimeUnit unit, Class<E> exceptionType) {
+		this(maxSize, timeToLive, unit, exceptionType, System::nanoTime);
+	}
+
+	ExpiringLoadingCache(int maxSize, long timeToLive, TimeUnit unit, Class<E> exceptionType, LongSupplier clock) {
+		if (maxSize < 0) throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+		if (timeToLive < 0) throw new IllegalArgumentException("timeToLive must not be negative: " + timeToLive);
+		this.maxSize = maxSize;
+		this.exceptionType = exceptionType;
+		this.timeToLive = unit.toNanos(timeToLive);
+		this.clock = clock;
+	}
+
+	/**
+	 * Returns the value for key, loading it with loader if it is not in the
+	 * cache or it has expired. If another thread is already loading key, waits
+	 * for its value instead.
+	 *
+	 * @throws E the exception thrown by loader, or by the loader of the thread
+	 *           this thread was waiting for
+	 */
+	public V get(K key, Loader<K, V, E> loader) throws E {
+		final CompletableFuture<V> future;
+		final boolean owner;
+		synchronized (this) {
+			final Entry<V> entry = entries.get(key);
+			if (entry != null && clock.getAsLong() - entry.loaded < timeToLive) {
+				hits++;
+				return entry.value;
+			}
+			if (entry != null) entries.remove(key);
+			misses++;
+			final CompletableFuture<V> current = loading.get(key);
+			owner = current == null;
+			future = owner ? new CompletableFuture<>() : current;
+			if (owner) loading.put(key, future);
+		}
+		if (owner) return load(key, loader, future);
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw exceptionType.cast(cause);
+		}
+	}
+
+	private V load(K key, Loader<K, V, E> loader, CompletableFuture<V> future) throws E {
+		try {
+			final V value = loader.load(key);
+			synchronized (this) {
+				loading.remove(key);
+				if (value != null) put(key, value);
+			}
+			future.complete(value);
+			return value;
+		} catch (Exception | Error e) {
+			synchronized (this) {
+				loading.remove(key);
+			}
+			future.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	private void put(K key, V value) {
+		if (maxSize == 0) return;
+		final Iterator<Entry<V>> iterator = entries.values().iterator();
+		while (entries.size() >= maxSize && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+			evictions++;
+		}
+		entries.put(key, new Entry<>(value, clock.getAsLong()));
+	}
+
+	/**
+	 * Removes the value for key, if present. A load in progress is not
+	 * cancelled.
+	 */
+	public synchronized void invalidate(K key) {
+		entries.remove(key);
+	}
+
+	/**
+	 * Removes all the values.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * @return a snapshot of the usage statistics of this cache. Weights are
+	 * the number of values
+	 */
+	public synchronized CacheStats getStats() {
+		return new CacheStats(hits, misses, evictions, entries.size(), entries.size(), maxSize);
+	}
+
+	/**
+	 * Loads the value of a key from its source.
+	 *
+	 * @param <E> type of the exception thrown when the value cannot be loaded
+	 */
+	@FunctionalInterface
+	public interface Loader<K, V, E extends Exception> {
+		V load(K key) throws E;
+	}
+
+	private static class Entry<V> {
+		private final V value;
+		private final long loaded;
+
+		Entry(V value, long loaded) {
+			this.value = value;
+			this.loaded = loaded;
+		}
+	}
+}
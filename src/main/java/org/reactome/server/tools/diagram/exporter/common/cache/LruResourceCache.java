@@ -0,0 +1,91 @@
+package org.reactome.server.tools.diagram.exporter.common.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link ResourceCache} bounded by the estimated size of its values. When a
+ * new value does not fit, the least recently used values are evicted. Values
+ * heavier than the whole cache are not stored.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public class LruResourceCache<K, V> implements ResourceCache<K, V> {
+
+	private final long maxWeight;
+	// access order, the eldest entry is the least recently used
+	private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long weight = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * @param maxWeight max estimated size in bytes of the cached values
+	 */
+	public LruResourceCache(long maxWeight) {
+		if (maxWeight < 0) throw new IllegalArgumentException("maxWeight must not be negative: " + maxWeight);
+		this.maxWeight = maxWeight;
+	}
+
+	@Override
+	public synchronized V get(K key, Object version) {
+		final Entry<V> entry = entries.get(key);
+		if (entry == null || !Objects.equals(entry.version, version)) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	@Override
+	public synchronized void put(K key, Object version, V value, long weight) {
+		remove(key);
+		if (weight > maxWeight) return;
+		final Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+		while (this.weight + weight > maxWeight && iterator.hasNext()) {
+			this.weight -= iterator.next().getValue().weight;
+			iterator.remove();
+			evictions++;
+		}
+		entries.put(key, new Entry<>(version, value, weight));
+		this.weight += weight;
+	}
+
+	@Override
+	public synchronized void invalidate(K key) {
+		remove(key);
+	}
+
+	@Override
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	@Override
+	public synchronized CacheStats getStats() {
+		return new CacheStats(hits, misses, evictions, entries.size(), weight, maxWeight);
+	}
+
+	private void remove(K key) {
+		final Entry<V> entry = entries.remove(key);
+		if (entry != null) weight -= entry.weight;
+	}
+
+	private static class Entry<V> {
+		private final Object version;
+		private final V value;
+		private final long weight;
+
+		Entry(Object version, V value, long weight) {
+			this.version = version;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package org.reactome.server.tools.diagram.exporter.common.cache;
+
+/**
+ * A cache of resources that can change while the application is running.
+ * Every value is stored with a version (e.g. the modification time of the
+ * file it was read from), and it is only returned for that same version.
+ * Implementations must be thread safe.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public interface ResourceCache<K, V> {
+
+	/**
+	 * @param key     key of the resource
+	 * @param version current version of the resource
+	 *
+	 * @return the cached value, or null if there is no value for key or it
+	 * was stored with a different version
+	 */
+	V get(K key, Object version);
+
+	/**
+	 * Stores a value, replacing any previous version.
+	 *
+	 * @param key     key of the resource
+	 * @param version version of the resource
+	 * @param value   the value
+	 * @param weight  estimated size of value in bytes
+	 */
+	void put(K key, Object version, V value, long weight);
+
+	/**
+	 * Removes the value for key, if present.
+	 */
+	void invalidate(K key);
+
+	/**
+	 * Removes all the values.
+	 */
+	void clear();
+
+	/**
+	 * @return a snapshot of the usage statistics of this cache
+	 */
+	CacheStats getStats();
+}
@@ -0,0 +1,92 @@
+package org.reactome.server.tools.diagram.exporter.common.collections;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive long values, so values are not boxed. Open addressing
+ * with linear probing. Values cannot be removed. Not thread safe.
+ */
+public class LongHashSet {
+
+	private long[] slots;
+	// 0 is the marker of empty slots, so it is stored apart
+	private boolean hasZero = false;
+	private int size = 0;
+
+	public LongHashSet() {
+		this(8);
+	}
+
+	/**
+	 * @param expectedSize number of values that fit without resizing
+	 */
+	public LongHashSet(int expectedSize) {
+		if (expectedSize < 0) throw new IllegalArgumentException("expectedSize must not be negative: " + expectedSize);
+		slots = new long[Integer.highestOneBit(2 * Math.max(expectedSize, 4) - 1) << 1];
+	}
+
+	private static int slot(long value, long[] slots) {
+		final int mask = slots.length - 1;
+		int slot = LongObjectMap.hash(value) & mask;
+		while (slots[slot] != 0 && slots[slot] != value) slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/**
+	 * @return true if value was not in the set
+	 */
+	public boolean add(long value) {
+		if (value == 0) {
+			if (hasZero) return false;
+			hasZero = true;
+			size++;
+			return true;
+		}
+		int slot = slot(value, slots);
+		if (slots[slot] == value) return false;
+		// load factor under 0.5
+		if (2 * (size + 1) > slots.length) {
+			rehash();
+			slot = slot(value, slots);
+		}
+		slots[slot] = value;
+		size++;
+		return true;
+	}
+
+	public boolean contains(long value) {
+		if (value == 0) return hasZero;
+		return slots[slot(value, slots)] == value;
+	}
+
+	private void rehash() {
+		final long[] rehashed = new long[2 * slots.length];
+		for (long value : slots)
+			if (value != 0) rehashed[slot(value, rehashed)] = value;
+		slots = rehashed;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the values of the set, in no particular order
+	 */
+	public long[] toArray() {
+		final long[] values = new long[size];
+		int i = 0;
+		if (hasZero) i++;
+		for (long value : slots) if (value != 0) values[i++] = value;
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
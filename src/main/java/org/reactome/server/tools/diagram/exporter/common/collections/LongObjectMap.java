@@ -0,0 +1,249 @@
+package org.reactome.server.tools.diagram.exporter.common.collections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.function.LongFunction;
+
+/**
+ * Map from primitive long keys to non null values, so keys are not boxed.
+ * Entries are stored in insertion order, and a hash table with open
+ * addressing holds their positions. Iteration follows insertion order, and
+ * every key keeps the position it was first inserted at. Entries cannot be
+ * removed. Not thread safe, but maps that are not modified after being
+ * published can be read by several threads. Use {@link #unmodifiable} to
+ * publish them.
+ *
+ * @param <V> type of the values
+ */
+public class LongObjectMap<V> implements ReadOnlyLongObjectMap<V> {
+
+	private static final int FREE = -1;
+
+	private long[] keys;
+	private Object[] values;
+	// positions of the entries in keys and values, FREE if the slot is empty
+	private int[] table;
+	private int size = 0;
+
+	public LongObjectMap() {
+		this(8);
+	}
+
+	/**
+	 * @param expectedSize number of entries that fit without resizing
+	 */
+	public LongObjectMap(int expectedSize) {
+		if (expectedSize < 0) throw new IllegalArgumentException("expectedSize must not be negative: " + expectedSize);
+		keys = new long[Math.max(expectedSize, 4)];
+		values = new Object[keys.length];
+		table = new int[tableSize(keys.length)];
+		Arrays.fill(table, FREE);
+	}
+
+	// load factor under 0.5
+	private static int tableSize(int capacity) {
+		return Integer.highestOneBit(2 * capacity - 1) << 1;
+	}
+
+	static int hash(long key) {
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ h >>> 32);
+	}
+
+	private int slot(long key) {
+		final int mask = table.length - 1;
+		int slot = hash(key) & mask;
+		while (table[slot] != FREE && keys[table[slot]] != key) slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	@Override
+	public int indexOf(long key) {
+		return table[slot(key)];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		final int position = indexOf(key);
+		return position == FREE ? null : (V) values[position];
+	}
+
+	@Override
+	public boolean containsKey(long key) {
+		return indexOf(key) != FREE;
+	}
+
+	/**
+	 * Associates value to key. If key was already in the map, it keeps its
+	 * position.
+	 *
+	 * @return the previous value of key, or null if key was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		Objects.requireNonNull(value, "value");
+		final int slot = slot(key);
+		final int position = table[slot];
+		if (position != FREE) {
+			final V previous = (V) values[position];
+			values[position] = value;
+			return previous;
+		}
+		add(slot, key, value);
+		return null;
+	}
+
+	/**
+	 * @return the value of key. If key is not in the map, the value computed
+	 * by mapping is added and returned
+	 */
+	@SuppressWarnings("unchecked")
+	public V computeIfAbsent(long key, LongFunction<? extends V> mapping) {
+		final int slot = slot(key);
+		final int position = table[slot];
+		if (position != FREE) return (V) values[position];
+		final V value = Objects.requireNonNull(mapping.apply(key), "value");
+		add(slot, key, value);
+		return value;
+	}
+
+	private void add(int slot, long key, V value) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, 2 * size);
+			values = Arrays.copyOf(values, 2 * size);
+			if (tableSize(keys.length) > table.length) {
+				rehash();
+				slot = slot(key);
+			}
+		}
+		keys[size] = key;
+		values[size] = value;
+		table[slot] = size++;
+	}
+
+	private void rehash() {
+		table = new int[tableSize(keys.length)];
+		Arrays.fill(table, FREE);
+		for (int position = 0; position < size; position++) table[slot(keys[position])] = position;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public long keyAt(int position) {
+		Objects.checkIndex(position, size);
+		return keys[position];
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V valueAt(int position) {
+		Objects.checkIndex(position, size);
+		return (V) values[position];
+	}
+
+	@Override
+	public long[] keys() {
+		return Arrays.copyOf(keys, size);
+	}
+
+	@Override
+	public Collection<V> values() {
+		return Collections.unmodifiableList(new AbstractList<V>() {
+			@Override
+			public V get(int index) {
+				return valueAt(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		});
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<? super V> action) {
+		for (int position = 0; position < size; position++) action.accept(keys[position], (V) values[position]);
+	}
+
+	/**
+	 * @return a read-only view of map. Changes in map are visible through the
+	 * view
+	 */
+	public static <V> ReadOnlyLongObjectMap<V> unmodifiable(ReadOnlyLongObjectMap<V> map) {
+		return map instanceof UnmodifiableView ? map : new UnmodifiableView<>(map);
+	}
+
+	private static class UnmodifiableView<V> implements ReadOnlyLongObjectMap<V> {
+
+		private final ReadOnlyLongObjectMap<V> map;
+
+		private UnmodifiableView(ReadOnlyLongObjectMap<V> map) {
+			this.map = map;
+		}
+
+		@Override
+		public int indexOf(long key) {
+			return map.indexOf(key);
+		}
+
+		@Override
+		public V get(long key) {
+			return map.get(key);
+		}
+
+		@Override
+		public boolean containsKey(long key) {
+			return map.containsKey(key);
+		}
+
+		@Override
+		public int size() {
+			return map.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return map.isEmpty();
+		}
+
+		@Override
+		public long keyAt(int position) {
+			return map.keyAt(position);
+		}
+
+		@Override
+		public V valueAt(int position) {
+			return map.valueAt(position);
+		}
+
+		@Override
+		public long[] keys() {
+			return map.keys();
+		}
+
+		@Override
+		public Collection<V> values() {
+			return map.values();
+		}
+
+		@Override
+		public void forEach(EntryConsumer<? super V> action) {
+			map.forEach(action);
+		}
+	}
+}
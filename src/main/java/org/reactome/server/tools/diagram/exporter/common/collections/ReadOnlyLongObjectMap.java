@@ -0,0 +1,59 @@
+package org.reactome.server.tools.diagram.exporter.common.collections;
+
+import java.util.Collection;
+
+/**
+ * Read methods of a {@link LongObjectMap}. Positions are the insertion order
+ * of the entries.
+ *
+ * @param <V> type of the values
+ */
+public interface ReadOnlyLongObjectMap<V> {
+
+	/**
+	 * @return the position of key in insertion order, or -1 if it is not in
+	 * the map
+	 */
+	int indexOf(long key);
+
+	/**
+	 * @return the value of key, or null if key is not in the map
+	 */
+	V get(long key);
+
+	boolean containsKey(long key);
+
+	int size();
+
+	boolean isEmpty();
+
+	/**
+	 * @return the key at position, in insertion order
+	 */
+	long keyAt(int position);
+
+	/**
+	 * @return the value at position, in insertion order
+	 */
+	V valueAt(int position);
+
+	/**
+	 * @return a copy of the keys, in insertion order
+	 */
+	long[] keys();
+
+	/**
+	 * @return an unmodifiable view of the values, in insertion order
+	 */
+	Collection<V> values();
+
+	/**
+	 * Performs action for every entry, in insertion order.
+	 */
+	void forEach(EntryConsumer<? super V> action);
+
+	@FunctionalInterface
+	interface EntryConsumer<V> {
+		void accept(long key, V value);
+	}
+}
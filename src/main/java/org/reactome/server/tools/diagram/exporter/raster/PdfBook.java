@@ -0,0 +1,80 @@
+package org.reactome.server.tools.diagram.exporter.raster;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import org.reactome.server.tools.diagram.exporter.raster.diagram.DiagramRenderer;
+import org.reactome.server.tools.diagram.exporter.raster.itext.awt.PdfGraphicsResources;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A PDF document with one diagram per page. Fonts and logos are embedded
+ * once for the whole book, and pages are written as soon as they are added,
+ * so memory does not grow with the number of pages.
+ * <pre>
+ *     try (PdfBook book = exporter.createPdfBook(outputStream)) {
+ *         for (RasterArgs args : pages) exporter.addToPdfBook(book, args);
+ *     }
+ * </pre>
+ * Pages must be added from one thread at a time.
+ *
+ * @see RasterExporter#addToPdfBook(PdfBook, RasterArgs)
+ */
+public class PdfBook implements Closeable {
+
+	private final PdfDocument document;
+	private final PdfGraphicsResources resources = new PdfGraphicsResources();
+	private int pages = 0;
+
+	/**
+	 * @param os where to write the book. It is closed with the book, or right
+	 *           away if the book cannot be created
+	 */
+	PdfBook(OutputStream os) {
+		try {
+			this.document = new PdfDocument(new PdfWriter(os, new WriterProperties().setFullCompressionMode(true)));
+		} catch (RuntimeException e) {
+			try {
+				os.close();
+			} catch (IOException closing) {
+				e.addSuppressed(closing);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Renders renderer into a new page. If the render fails, the page is
+	 * removed, so the book can still be closed with the pages added before.
+	 */
+	public synchronized void add(DiagramRenderer renderer) {
+		final int before = document.getNumberOfPages();
+		try {
+			renderer.renderToPdfPage(document, resources);
+		} catch (RuntimeException | Error e) {
+			if (document.getNumberOfPages() > before) document.removePage(document.getNumberOfPages());
+			throw e;
+		}
+		pages++;
+	}
+
+	/**
+	 * @return number of pages in the book
+	 */
+	public synchronized int getPages() {
+		return pages;
+	}
+
+	/**
+	 * Writes the fonts and closes the output stream.
+	 */
+	@Override
+	public synchronized void close() {
+		// an empty document cannot be closed
+		if (pages == 0) document.addNewPage();
+		document.close();
+	}
+}
@@ -11,6 +11,8 @@ import org.reactome.server.analysis.core.result.utils.TokenUtils;
 import org.reactome.server.tools.diagram.data.graph.Graph;
 import org.reactome.server.tools.diagram.data.layout.Diagram;
 import org.reactome.server.tools.diagram.exporter.common.analysis.AnalysisException;
+import org.reactome.server.tools.diagram.exporter.common.cache.CacheStats;
+import org.reactome.server.tools.diagram.exporter.common.cache.ExpiringLoadingCache;
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramJsonDeserializationException;
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramJsonNotFoundException;
 import org.reactome.server.tools.diagram.exporter.raster.api.RasterArgs;
@@ -27,6 +29,7 @@ import java.io.OutputStream;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Lorente-Arencibia, Pascual (pasculorente@gmail.com)
@@ -36,10 +39,20 @@ import java.util.TreeSet;
 @Component
 public class RasterExporter {
 
+	/**
+	 * Analysis results are read from disk once per token. The Pathway Browser
+	 * exports the same analysis several times in a few minutes. Results do not
+	 * expose their size, so the cache keeps up to RESULT_CACHE_SIZE of them
+	 * whatever their size: the heap must fit that many of the largest results.
+	 */
+	private static final int RESULT_CACHE_SIZE = 16;
+	private static final long RESULT_TIME_TO_LIVE = 5;
+
 	private final String diagramPath;
 	private final String ehldPath;
 	private final Set<String> ehld;
 	private final TokenUtils tokenUtils;
+	private final ExpiringLoadingCache<String, AnalysisStoredResult, AnalysisException> results;
 
 	/**
 	 * Creates an empty RasterExporter. As no paths are configured, only
@@ -50,6 +63,7 @@ public class RasterExporter {
 		ehldPath = null;
 		ehld = null;
 		tokenUtils = null;
+		results = null;
 	}
 
 	/**
@@ -64,6 +78,7 @@ public class RasterExporter {
 		this.diagramPath = diagramPath;
 		this.ehldPath = ehldPath;
 		this.tokenUtils = new TokenUtils(analysisPath);
+		this.results = new ExpiringLoadingCache<>(RESULT_CACHE_SIZE, RESULT_TIME_TO_LIVE, TimeUnit.MINUTES, AnalysisException.class);
 		Set<String> ehld;
 		try {
 			ehld = new TreeSet<>(IOUtils.readLines(new FileReader(svgSummary)));
@@ -163,6 +178,23 @@ public class RasterExporter {
 	}
 
 
+	/**
+	 * Creates an empty {@link PdfBook} that writes into os. Add pages with
+	 * {@link #addToPdfBook(PdfBook, RasterArgs)} and close it when done.
+	 */
+	public PdfBook createPdfBook(OutputStream os) {
+		return new PdfBook(os);
+	}
+
+	/**
+	 * Renders the diagram of args as a new page of book. Pathways with EHLD
+	 * are also rendered as diagrams.
+	 */
+	public void addToPdfBook(PdfBook book, RasterArgs args) throws AnalysisException, DiagramJsonNotFoundException, DiagramJsonDeserializationException {
+		final AnalysisStoredResult result = getResult(args.getToken(), null);
+		book.add(new DiagramRenderer(args, diagramPath, result));
+	}
+
 	/**
 	 * Exports the diagram defined by args in the most appropriate way,
 	 * depending on the args, and using os to export the result. This is a
@@ -214,10 +246,16 @@ public class RasterExporter {
 				&& allowAnimatedGif(type))
 			renderer.renderToAnimatedGif(os);
 		else if (args.getFormat().equalsIgnoreCase("svg"))
-			RasterOutput.save(renderer.renderToSvg(), os);
+			renderer.renderToSvg(os);
+		else if (args.getFormat().equalsIgnoreCase("svgz"))
+			renderer.renderToSvg(RasterOutput.gzip(os, args.getCompressionLevel()));
 		else if (args.getFormat().equalsIgnoreCase("pdf"))
-			RasterOutput.save(renderer.renderToPdf(), os);
-		else RasterOutput.save(renderer.render(), args.getFormat(), os);
+			renderer.renderToPdf(os);
+		else if (args.isTiled() && args.getFormat().equalsIgnoreCase("png"))
+			RasterOutput.save(renderer.renderTiled(), args.getFormat(), os, args.getCompressionLevel());
+		else if (args.isIndexed() && args.getFormat().equalsIgnoreCase("png"))
+			RasterOutput.saveIndexed(renderer.render(), os, args.getCompressionLevel());
+		else RasterOutput.save(renderer.render(), args.getFormat(), os, args.getCompressionLevel());
 	}
 
 	private RasterRenderer selectRenderer(RasterArgs args, AnalysisStoredResult result) throws EhldException, DiagramJsonNotFoundException, DiagramJsonDeserializationException {
@@ -226,13 +264,26 @@ public class RasterExporter {
 				: new DiagramRenderer(args, diagramPath, result);
 	}
 
+	/**
+	 * @return usage statistics of the analysis results cache, or null if this
+	 * RasterExporter was created with {@link #RasterExporter()}
+	 */
+	public CacheStats getResultCacheStats() {
+		return results == null ? null : results.getStats();
+	}
+
 	/**
 	 * If result is not null, use result. If not and token is not null try to
-	 * get the result using it. If token is also null, returns null.
+	 * get the result using it. If token is also null, returns null. Results
+	 * are cached for a few minutes, expired or invalid tokens are not.
 	 */
 	private AnalysisStoredResult getResult(String token, AnalysisStoredResult result) throws AnalysisException {
 		if (result != null) return result;
 		if (token == null) return null;
+		return results.get(token, this::loadResult);
+	}
+
+	private AnalysisStoredResult loadResult(String token) throws AnalysisException {
 		try {
 			return tokenUtils.getFromToken(token);
 		} catch (ResourceGoneException e) {
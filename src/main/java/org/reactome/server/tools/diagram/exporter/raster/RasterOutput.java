@@ -7,12 +7,17 @@ import org.apache.batik.transcoder.TranscoderException;
 import org.apache.batik.transcoder.TranscoderInput;
 import org.apache.batik.transcoder.TranscoderOutput;
 import org.apache.batik.transcoder.svg2svg.SVGTranscoder;
+import org.reactome.server.tools.diagram.exporter.raster.png.PngPalette;
+import org.reactome.server.tools.diagram.exporter.raster.png.PngWriter;
 import org.w3c.dom.svg.SVGDocument;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.*;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Supporting class to output generated diagrams.
@@ -20,15 +25,15 @@ import java.net.HttpURLConnection;
 @SuppressWarnings("WeakerAccess")
 public class RasterOutput {
 
+	private static final int GZIP_BUFFER = 1 << 16;
+
 	/**
 	 * Saves document into file.
 	 */
 	public static void save(SVGDocument document, File file) throws IOException, TranscoderException {
-		final SVGTranscoder transcoder = new SVGTranscoder();
-		final TranscoderInput input = new TranscoderInput(document);
-		final FileWriter writer = new FileWriter(file);
-		final TranscoderOutput output = new TranscoderOutput(writer);
-		transcoder.transcode(input, output);
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			new SVGTranscoder().transcode(new TranscoderInput(document), new TranscoderOutput(writer));
+		}
 	}
 
 	/**
@@ -43,16 +48,35 @@ public class RasterOutput {
 	 * Sends document through os. If close is <em>true</em>, closes os.
 	 */
 	public static void save(SVGDocument document, OutputStream os, boolean close) throws TranscoderException, IOException {
-		final SVGTranscoder transcoder = new SVGTranscoder();
-		final TranscoderInput input = new TranscoderInput(document);
-		final TranscoderOutput output = new TranscoderOutput(new OutputStreamWriter(os));
-		transcoder.transcode(input, output);
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+		new SVGTranscoder().transcode(new TranscoderInput(document), new TranscoderOutput(writer));
+		writer.flush();
 		if (close) {
 			os.flush();
 			os.close();
 		}
 	}
 
+	/**
+	 * Sends document through os as a gzip compressed SVG (svgz), flushes and
+	 * closes os.
+	 *
+	 * @param level compression level, from 1 (fastest) to 9 (smallest)
+	 */
+	public static void saveCompressed(SVGDocument document, OutputStream os, int level) throws TranscoderException, IOException {
+		save(document, gzip(os, level), true);
+	}
+
+	/**
+	 * Wraps os in a gzip stream with the given compression level. The gzip
+	 * stream must be closed to write the end of the file.
+	 *
+	 * @param level compression level, from 1 (fastest) to 9 (smallest)
+	 */
+	public static OutputStream gzip(OutputStream os, int level) throws IOException {
+		return new LevelGzipOutputStream(os, level);
+	}
+
 	/**
 	 * Shortcut for <code>save(document, connection, true)</code>.
 	 *
@@ -74,7 +98,9 @@ public class RasterOutput {
 	 * Saves image into file.
 	 */
 	public static void save(BufferedImage image, String ext, File file) throws IOException {
-		ImageIO.write(image, ext, file);
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+			write(image, ext, os, -1);
+		}
 	}
 
 	/**
@@ -90,13 +116,54 @@ public class RasterOutput {
 	 * Sends image through os. If close is true, flushes and closes os.
 	 */
 	public static void save(BufferedImage image, String ext, OutputStream os, boolean close) throws IOException {
-		ImageIO.write(image, ext, os);
+		write(image, ext, os, -1);
 		if (close) {
 			os.flush();
 			os.close();
 		}
 	}
 
+	/**
+	 * Sends image through os, flushes and closes os. Tiled images, as the
+	 * ones from {@link RasterRenderer#renderTiled()}, are rendered while they
+	 * are written.
+	 */
+	public static void save(RenderedImage image, String ext, OutputStream os) throws IOException {
+		save(image, ext, os, -1);
+	}
+
+	/**
+	 * Sends image through os, flushes and closes os. PNG images are
+	 * compressed with level, from 1 (fastest) to 9 (smallest), or -1 for the
+	 * default. Other formats ignore it.
+	 */
+	public static void save(RenderedImage image, String ext, OutputStream os, int level) throws IOException {
+		write(image, ext, os, level);
+		os.flush();
+		os.close();
+	}
+
+	/**
+	 * Sends image through os as a palette PNG, flushes and closes os.
+	 *
+	 * @see PngPalette
+	 */
+	public static void saveIndexed(BufferedImage image, OutputStream os) throws IOException {
+		saveIndexed(image, os, -1);
+	}
+
+	/**
+	 * Sends image through os as a palette PNG compressed with level, flushes
+	 * and closes os.
+	 *
+	 * @see PngPalette
+	 */
+	public static void saveIndexed(BufferedImage image, OutputStream os, int level) throws IOException {
+		PngWriter.writeIndexed(image, os, level);
+		os.flush();
+		os.close();
+	}
+
 	/**
 	 * Shortcut for <code>save(image, ext, connection, true)</code>
 	 *
@@ -115,6 +182,15 @@ public class RasterOutput {
 		save(image, ext, connection.getOutputStream(), close);
 	}
 
+	/**
+	 * PNG images are written with a {@link PngWriter}, that does not copy the
+	 * image and compresses in parallel. Other formats use ImageIO.
+	 */
+	private static void write(RenderedImage image, String ext, OutputStream os, int level) throws IOException {
+		if (ext.equalsIgnoreCase("png")) PngWriter.write(image, os, level);
+		else ImageIO.write(image, ext, os);
+	}
+
 	/**
 	 * Stores this document into the output stream using a new Document in
 	 * writing mode. document must be in read mode.
@@ -129,4 +205,15 @@ public class RasterOutput {
 		document.getPdfDocument().copyPagesTo(1, document.getPdfDocument().getNumberOfPages(), output.getPdfDocument());
 		output.close();
 	}
+
+	/**
+	 * GZIPOutputStream only takes the compression level through its deflater.
+	 */
+	private static class LevelGzipOutputStream extends GZIPOutputStream {
+
+		LevelGzipOutputStream(OutputStream os, int level) throws IOException {
+			super(os, GZIP_BUFFER);
+			def.setLevel(level);
+		}
+	}
 }
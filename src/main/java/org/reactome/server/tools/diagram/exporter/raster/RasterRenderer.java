@@ -1,10 +1,12 @@
 package org.reactome.server.tools.diagram.exporter.raster;
 
 import com.itextpdf.layout.Document;
+import org.apache.batik.transcoder.TranscoderException;
 import org.w3c.dom.svg.SVGDocument;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -25,6 +27,14 @@ public interface RasterRenderer {
 	 */
 	BufferedImage render();
 
+	/**
+	 * Renders the diagram into an image that can be rendered in parts, when
+	 * image writers ask for them. By default, the same as {@link #render()}.
+	 */
+	default RenderedImage renderTiled() {
+		return render();
+	}
+
 	/**
 	 * Renders the diagram as an animated GIF and sends the result to the
 	 * OutputStream. GIFs need to be sent to an OutputStream because they cannot
@@ -41,10 +51,28 @@ public interface RasterRenderer {
 	 */
 	SVGDocument renderToSvg();
 
+	/**
+	 * Renders the diagram as a SVG directly into os, which is closed. By
+	 * default, {@link #renderToSvg()} is serialized into os.
+	 */
+	default void renderToSvg(OutputStream os) throws IOException, TranscoderException {
+		RasterOutput.save(renderToSvg(), os);
+	}
+
 	/**
 	 * Renders the diagram as a PDF document using iText7. Implementations of
 	 * this interface should ensure that the document is in reading mode.
 	 */
 	Document renderToPdf() throws IOException;
 
+	/**
+	 * Renders the diagram as a PDF document directly into os, which is
+	 * closed. Use it instead of {@link #renderToPdf()} when the pages do not
+	 * need to be read. By default, the pages of {@link #renderToPdf()} are
+	 * copied into os.
+	 */
+	default void renderToPdf(OutputStream os) throws IOException {
+		RasterOutput.save(renderToPdf(), os);
+	}
+
 }
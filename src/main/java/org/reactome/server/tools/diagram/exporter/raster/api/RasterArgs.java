@@ -25,6 +25,10 @@ public class RasterArgs {
 	private Double factor = scale(quality);
 	private Integer margin = 15;
 	private boolean ehld = true;
+	private boolean tiled = false;
+	private boolean indexed = false;
+	private Integer precision = 2;
+	private Integer compressionLevel = 6;
 
 	public RasterArgs(String pwyStId, String format) {
 		this.stId = pwyStId;
@@ -63,7 +67,7 @@ public class RasterArgs {
 	}
 
 	/**
-	 * output image format (png, jpg, gif)
+	 * output image format (png, jpg, gif, svg, svgz, pdf)
 	 */
 	public String getFormat() {
 		return format;
@@ -201,4 +205,63 @@ public class RasterArgs {
 		this.ehld = ehld;
 		return this;
 	}
+
+	/**
+	 * If true, PNG images are rendered and written in strips, so they can be
+	 * larger than the images that fit in memory.
+	 */
+	public boolean isTiled() {
+		return tiled;
+	}
+
+	public RasterArgs setTiled(boolean tiled) {
+		this.tiled = tiled;
+		return this;
+	}
+
+	/**
+	 * If true, PNG images are written with a palette of up to 256 colors,
+	 * quantized when the image has more. Ignored for tiled images.
+	 */
+	public boolean isIndexed() {
+		return indexed;
+	}
+
+	public RasterArgs setIndexed(boolean indexed) {
+		this.indexed = indexed;
+		return this;
+	}
+
+	/**
+	 * Number of decimals of the coordinates of SVG diagrams.
+	 */
+	public Integer getPrecision() {
+		return precision;
+	}
+
+	public RasterArgs setPrecision(Integer precision) {
+		if (precision != null) {
+			if (precision < 1 || precision > 6)
+				throw new IllegalArgumentException("precision must be in the range [1-6]");
+			this.precision = precision;
+		}
+		return this;
+	}
+
+	/**
+	 * deflate compression level of PNG images and svgz documents, from 1
+	 * (fastest) to 9 (smallest).
+	 */
+	public Integer getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	public RasterArgs setCompressionLevel(Integer compressionLevel) {
+		if (compressionLevel != null) {
+			if (compressionLevel < 1 || compressionLevel > 9)
+				throw new IllegalArgumentException("compressionLevel must be in the range [1-9]");
+			this.compressionLevel = compressionLevel;
+		}
+		return this;
+	}
 }
@@ -0,0 +1,51 @@
+package org.reactome.server.tools.diagram.exporter.raster.diagram;
+
+import org.apache.batik.svggen.SVGGeneratorContext;
+import org.apache.batik.svggen.StyleHandler;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.apache.batik.util.SVGConstants.*;
+
+/**
+ * Replaces the style attributes of the elements generated by SVGGraphics2D
+ * with CSS classes, one per distinct style. Call {@link #appendStyle(Document)}
+ * once the diagram is rendered to declare the classes.
+ */
+class ClassStyleHandler implements StyleHandler {
+
+	private final Map<String, String> classes = new LinkedHashMap<>();
+
+	@Override
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	public void setStyle(Element element, Map styleMap, SVGGeneratorContext generatorContext) {
+		if (styleMap.isEmpty()) return;
+		// sorted, so equal maps give equal styles
+		final StringBuilder style = new StringBuilder();
+		new TreeMap<String, String>(styleMap).forEach((name, value) -> {
+			if (style.length() > 0) style.append(';');
+			style.append(name).append(':').append(value);
+		});
+		final String className = classes.computeIfAbsent(style.toString(), key -> "s" + classes.size());
+		element.setAttribute(SVG_CLASS_ATTRIBUTE, className);
+	}
+
+	/**
+	 * Adds a style element with the classes as the first child of the root
+	 * element.
+	 */
+	void appendStyle(Document document) {
+		if (classes.isEmpty()) return;
+		final StringBuilder css = new StringBuilder("\n");
+		classes.forEach((style, name) -> css.append('.').append(name).append('{').append(style).append("}\n"));
+		final Element style = document.createElementNS(SVG_NAMESPACE_URI, SVG_STYLE_TAG);
+		style.setAttribute(SVG_TYPE_ATTRIBUTE, "text/css");
+		style.appendChild(document.createCDATASection(css.toString()));
+		final Element root = document.getDocumentElement();
+		root.insertBefore(style, root.getFirstChild());
+	}
+}
@@ -17,6 +17,7 @@ import org.reactome.server.tools.diagram.data.graph.Graph;
 import org.reactome.server.tools.diagram.data.layout.Diagram;
 import org.reactome.server.tools.diagram.data.layout.NodeProperties;
 import org.reactome.server.tools.diagram.exporter.common.ResourcesFactory;
+import org.reactome.server.tools.diagram.exporter.common.cache.CacheStats;
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramJsonDeserializationException;
 import org.reactome.server.tools.diagram.exporter.common.profiles.factory.DiagramJsonNotFoundException;
 import org.reactome.server.tools.diagram.exporter.raster.RasterRenderer;
@@ -24,26 +25,28 @@ import org.reactome.server.tools.diagram.exporter.raster.api.RasterArgs;
 import org.reactome.server.tools.diagram.exporter.raster.diagram.common.DiagramData;
 import org.reactome.server.tools.diagram.exporter.raster.diagram.common.FontProperties;
 import org.reactome.server.tools.diagram.exporter.raster.diagram.layers.DiagramCanvas;
+import org.reactome.server.tools.diagram.exporter.raster.diagram.layers.DrawLayer;
+import org.reactome.server.tools.diagram.exporter.raster.diagram.layers.Layer;
 import org.reactome.server.tools.diagram.exporter.raster.diagram.renderables.RenderableDiagramObject;
 import org.reactome.server.tools.diagram.exporter.raster.diagram.renderers.LegendRenderer;
 import org.reactome.server.tools.diagram.exporter.raster.diagram.renderers.LogoRenderer;
 import org.reactome.server.tools.diagram.exporter.raster.gif.AnimatedGifEncoder;
+import org.reactome.server.tools.diagram.exporter.raster.gif.GifFramePipeline;
 import org.reactome.server.tools.diagram.exporter.raster.itext.awt.PdfGraphics2D;
+import org.reactome.server.tools.diagram.exporter.raster.itext.awt.PdfGraphicsResources;
 import org.reactome.server.tools.diagram.exporter.raster.profiles.ColorProfiles;
+import org.reactome.server.tools.diagram.exporter.raster.svg.SvgGraphics2D;
 import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.svg.SVGDocument;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.awt.image.RenderedImage;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -71,13 +74,20 @@ public class DiagramRenderer implements RasterRenderer {
 	 */
 	private static final double MAX_IMAGE_SIZE = 1e8; // 100Mpixels
 	private static final double MAX_GIF_SIZE = 1e7; // 10Mpixels
+	/**
+	 * Tiled images only keep a few strips in memory, the limit is the time
+	 * to render them
+	 */
+	private static final double MAX_TILED_IMAGE_SIZE = 1e9; // 1Gpixels
 	private static final Set<String> TRANSPARENT_FORMATS = new HashSet<>(Collections.singletonList("png"));
 	private static final Set<String> NO_TRANSPARENT_FORMATS = new HashSet<>(Arrays.asList("jpg", "jpeg", "gif"));
 	private static final DOMImplementation SVG_IMPL = SVG12DOMImplementation.getDOMImplementation();
 	private final DiagramData data;
 	private final ColorProfiles colorProfiles;
 	private final RasterArgs args;
+	private final boolean tiled;
 	private final double factor;
+	private final double tiledFactor;
 	private final String title;
 	private final Diagram diagram;
 	private DiagramCanvas canvas;
@@ -108,14 +118,18 @@ public class DiagramRenderer implements RasterRenderer {
 		this.data = new DiagramData(diagram, graph, args, result);
 		canvas = new DiagramCanvas();
 		layout();
-		factor = limitFactor(MAX_IMAGE_SIZE);
+		// tiled PNG images are written with tiledFactor, so only its reduction is reported
+		tiled = args.isTiled() && "png".equalsIgnoreCase(args.getFormat());
+		factor = limitFactor(MAX_IMAGE_SIZE, !tiled);
+		tiledFactor = tiled ? limitFactor(MAX_TILED_IMAGE_SIZE, true) : factor;
 	}
 
 	@Override
 	public Dimension getDimension() {
 		final Rectangle2D bounds = canvas.getBounds();
-		int width = (int) ((2 * args.getMargin() + bounds.getWidth()) * factor + 0.5);
-		int height = (int) ((2 * args.getMargin() + bounds.getHeight()) * factor + 0.5);
+		final double scale = tiled ? tiledFactor : factor;
+		int width = (int) ((2 * args.getMargin() + bounds.getWidth()) * scale + 0.5);
+		int height = (int) ((2 * args.getMargin() + bounds.getHeight()) * scale + 0.5);
 		return new Dimension(width, height);
 	}
 
@@ -128,6 +142,9 @@ public class DiagramRenderer implements RasterRenderer {
 	public BufferedImage render() {
 		final Rectangle2D bounds = graphicsBounds(factor);
 		final String ext = args.getFormat();
+		if (data.getAnalysis().getType() == null && !data.getOverlay().hasSelection()
+				&& StaticLayers.fits((int) bounds.getWidth(), (int) bounds.getHeight()))
+			return renderOverStaticLayers(bounds, ext);
 		final BufferedImage image = createImage((int) bounds.getWidth(), (int) bounds.getHeight(), ext);
 		final Graphics2D graphics = createGraphics(image, ext, factor, -bounds.getX(), -bounds.getY());
 		canvas.render(graphics);
@@ -135,6 +152,83 @@ public class DiagramRenderer implements RasterRenderer {
 
 	}
 
+	/**
+	 * Renders the image in horizontal strips when they are read. Every strip
+	 * is clipped, so layers skip the objects outside of it. With {@link
+	 * RasterArgs#isTiled()}, the image can be larger than the ones returned
+	 * by {@link #render()}.
+	 */
+	@Override
+	public RenderedImage renderTiled() {
+		final Rectangle2D bounds = graphicsBounds(tiledFactor);
+		final String ext = args.getFormat();
+		final int type = createImage(1, 1, ext).getType();
+		return new TiledImage((int) bounds.getWidth(), (int) bounds.getHeight(), type, (strip, top) -> {
+			final Graphics2D graphics = createGraphics(strip, ext, tiledFactor, -bounds.getX(), -bounds.getY() - top);
+			graphics.setClip(new Rectangle2D.Double(
+					bounds.getX() / tiledFactor, (bounds.getY() + top) / tiledFactor,
+					strip.getWidth() / tiledFactor, strip.getHeight() / tiledFactor));
+			canvas.render(graphics);
+			graphics.dispose();
+		});
+	}
+
+	/**
+	 * Sets the max size in bytes of the cache of static layers, shared by all
+	 * the renderers. 0 disables the cache.
+	 */
+	public static void setStaticLayersCacheSize(long maxWeight) {
+		StaticLayers.setCacheSize(maxWeight);
+	}
+
+	/**
+	 * @return usage statistics of the cache of static layers, or null if
+	 * disabled
+	 */
+	public static CacheStats getStaticLayersCacheStats() {
+		return StaticLayers.getCacheStats();
+	}
+
+	/**
+	 * Without analysis nor selection, only the flag and halo layers differ
+	 * between requests on the same diagram. The layers below and above them
+	 * are taken from the {@link StaticLayers} cache. Images too large for the
+	 * cache are rendered in a single pass.
+	 */
+	private BufferedImage renderOverStaticLayers(Rectangle2D bounds, String ext) {
+		final int width = (int) bounds.getWidth();
+		final int height = (int) bounds.getHeight();
+		final List<Layer> layers = canvas.getLayers();
+		final int from = layers.indexOf(canvas.getFlags());
+		final int to = layers.indexOf(canvas.getAttachmentSelection()) + 1;
+		final String key = String.join("|", diagram.getStableId(), colorProfiles.getDiagramSheet().getName(),
+				String.valueOf(factor), String.valueOf(args.getMargin()), String.valueOf(title), ext,
+				String.valueOf(args.getBackground()));
+		StaticLayers staticLayers = StaticLayers.get(key, data.getIndex());
+		if (staticLayers == null) {
+			final BufferedImage below = createImage(width, height, ext);
+			final Graphics2D belowGraphics = createGraphics(below, ext, factor, -bounds.getX(), -bounds.getY());
+			layers.subList(0, from).forEach(layer -> layer.render(belowGraphics));
+			belowGraphics.dispose();
+			final BufferedImage above = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			final Graphics2D aboveGraphics = createGraphics(above, "png", factor, -bounds.getX(), -bounds.getY());
+			layers.subList(to, layers.size()).forEach(layer -> layer.render(aboveGraphics));
+			aboveGraphics.dispose();
+			staticLayers = new StaticLayers(below, above);
+			StaticLayers.put(key, data.getIndex(), staticLayers);
+		}
+		final BufferedImage image = createImage(width, height, ext);
+		staticLayers.getBelow().copyData(image.getRaster());
+		// "png" keeps the copied background
+		final Graphics2D graphics = createGraphics(image, "png", factor, -bounds.getX(), -bounds.getY());
+		layers.subList(from, to).forEach(layer -> layer.render(graphics));
+		graphics.dispose();
+		final Graphics2D imageGraphics = image.createGraphics();
+		imageGraphics.drawImage(staticLayers.getAbove(), 0, 0, null);
+		imageGraphics.dispose();
+		return image;
+	}
+
 	/**
 	 * Animated GIF are generated into a temp File
 	 */
@@ -147,17 +241,27 @@ public class DiagramRenderer implements RasterRenderer {
 			throw new IllegalStateException("Only EXPRESSION / GSA analysis can be rendered into animated GIFs");
 
 		final Rectangle2D bounds = graphicsBounds(factor);
+		final int offsetX = (int) -bounds.getX();
+		final int offsetY = (int) -bounds.getY();
+		// Static layers are rasterized once, only analysis and legend ticks
+		// are drawn again for each column
+		final FrameRenderer frameRenderer = new FrameRenderer(canvas.getLayers(), getColumnLayers(),
+				(int) bounds.getWidth(), (int) bounds.getHeight(),
+				(image, ext) -> createGraphics(image, ext, factor, offsetX, offsetY));
 
 		final AnimatedGifEncoder encoder = new AnimatedGifEncoder();
 		encoder.setDelay(1000);
 		encoder.setRepeat(0);
+		encoder.setOptimize(true);
 //		encoder.setQuality(1);
 		encoder.start(outputStream);
+		// frames are rendered here, as they share the canvas, and encoded in parallel
+		final GifFramePipeline pipeline = new GifFramePipeline(encoder);
 		for (int t = 0; t < data.getAnalysis().getResult().getExpression().getColumnNames().size(); t++) {
-			final BufferedImage image = frame(factor, (int) bounds.getWidth(), (int) bounds.getHeight(), (int) -bounds.getX(), (int) -bounds.getY(), t);
-			encoder.addFrame(image);
+			setColumn(t);
+			pipeline.addFrame(frameRenderer.render());
 		}
-		encoder.finish();
+		pipeline.finish();
 	}
 
 	@Override
@@ -165,13 +269,18 @@ public class DiagramRenderer implements RasterRenderer {
 		final SVGDocument document = (SVGDocument) SVG_IMPL.createDocument(SVGConstants.SVG_NAMESPACE_URI, "svg", null);
 		final SVGGeneratorContext ctx = SVGGeneratorContext.createDefault(document);
 		ctx.setExtensionHandler(new GradientHandler());
+		final ClassStyleHandler styleHandler = new ClassStyleHandler();
+		ctx.setStyleHandler(styleHandler);
+		ctx.setPrecision(args.getPrecision());
 		final SVGGraphics2D graphics2D = new SVGGraphics2D(ctx, true);
 		graphics2D.setFont(FontProperties.DEFAULT_FONT);
 		graphics2D.scale(args.getFactor(), args.getFactor());
+		graphics2D.setRenderingHint(DrawLayer.MERGE_PARTS, Boolean.TRUE);
 		canvas.render(graphics2D);
 		// TODO: Do not know how to extract SVG doc from SVGGraphics2D, so I take the root and append to my document as root
 		document.removeChild(document.getRootElement());
 		document.appendChild(graphics2D.getRoot());
+		styleHandler.appendStyle(document);
 
 		final Rectangle2D bounds = graphicsBounds(1);
 
@@ -180,18 +289,54 @@ public class DiagramRenderer implements RasterRenderer {
 		return document;
 	}
 
-	private BufferedImage frame(double factor, int width, int height, int offsetX, int offsetY, int t) {
+	/**
+	 * Writes the SVG elements as the layers are rendered, without building a
+	 * DOM. Use {@link #renderToSvg()} to modify the document.
+	 */
+	@Override
+	public void renderToSvg(OutputStream os) throws IOException {
+		final Rectangle2D bounds = graphicsBounds(1);
+		final Rectangle2D viewBox = new Rectangle2D.Double(bounds.getX(), bounds.getY(), args.getFactor() * bounds.getWidth(), args.getFactor() * bounds.getHeight());
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8))) {
+			final SvgGraphics2D graphics = new SvgGraphics2D(writer, viewBox, args.getPrecision());
+			graphics.setFont(FontProperties.DEFAULT_FONT);
+			graphics.scale(args.getFactor(), args.getFactor());
+			graphics.setRenderingHint(DrawLayer.MERGE_PARTS, Boolean.TRUE);
+			canvas.render(graphics);
+			graphics.finish();
+		}
+	}
+
+	/**
+	 * Layers whose content depends on the analysis column. Attachments are
+	 * only included when there is any, as they split the static layers.
+	 */
+	private Collection<Layer> getColumnLayers() {
+		final List<Layer> layers = new ArrayList<>(Arrays.asList(
+				canvas.getNodeAnalysis(),
+				canvas.getLegendTicks(),
+				canvas.getLegendTickArrows(),
+				canvas.getLegendBottomText()));
+		if (!canvas.getAttachments().isEmpty()) layers.add(canvas.getAttachments());
+		return layers;
+	}
+
+	/**
+	 * Updates the column dependent layers to show column t.
+	 */
+	private void setColumn(int t) {
 		canvas.getNodeAnalysis().clear();
-		data.getIndex().getNodesById().forEach((id, renderableNode) -> renderableNode.draw(canvas, colorProfiles, data, t));
+		canvas.getAttachments().clear();
+		data.getIndex().getNodesById().values().forEach(node -> node.drawColumn(canvas, colorProfiles, data, t));
+		data.getIndex().getPathwaysById().values().forEach(node -> node.drawColumn(canvas, colorProfiles, data, t));
 		// Update legend
 		legendRenderer.setCol(t, title);
-		final BufferedImage image = createImage(width, height, "gif");
-		final Graphics2D graphics = createGraphics(image, "gif", factor, offsetX, offsetY);
-		canvas.render(graphics);
-		return image;
 	}
 
-	private double limitFactor(double maxSize) {
+	/**
+	 * @param warn log a warning if the quality is reduced
+	 */
+	private double limitFactor(double maxSize, boolean warn) {
 		final Rectangle2D bounds = canvas.getBounds();
 		// TODO: 22/10/18 setting margin to 0 clips outer border
 		final double width = args.getFactor() * (args.getMargin() + bounds.getWidth());
@@ -199,7 +344,7 @@ public class DiagramRenderer implements RasterRenderer {
 		double size = width * height;
 		if (size > maxSize) {
 			final double newFactor = Math.sqrt(maxSize / ((args.getMargin() + bounds.getWidth()) * (args.getMargin() + bounds.getHeight())));
-			log.warning(String.format(
+			if (warn) log.warning(String.format(
 					"Diagram %s is too large. Quality reduced from %.2f to %.2f -> (%d x %d)",
 					diagram.getStableId(), args.getFactor(), newFactor, (int) (bounds.getWidth() * newFactor), (int) (bounds.getHeight() * newFactor)));
 			return newFactor;
@@ -240,12 +385,32 @@ public class DiagramRenderer implements RasterRenderer {
 	@Override
 	public Document renderToPdf() throws IOException {
 		final ByteArrayOutputStream os = new ByteArrayOutputStream();
-		final Document document = new Document(new PdfDocument(new PdfWriter(os)));
-		document.setMargins(0, 0, 0, 0);
+		renderToPdf(os);
+		// Create the reading mode document
+		return new Document(new PdfDocument(new PdfReader(new ByteArrayInputStream(os.toByteArray()))));
+	}
+
+	/**
+	 * Writes the PDF while it is rendered, without copies of the document.
+	 */
+	@Override
+	public void renderToPdf(OutputStream os) {
+		final PdfDocument document = new PdfDocument(new PdfWriter(os));
+		renderToPdfPage(document, new PdfGraphicsResources());
+		document.close();
+	}
+
+	/**
+	 * Renders the diagram into a new page at the end of document. The page
+	 * is flushed, so it cannot be modified afterwards.
+	 *
+	 * @param resources fonts and images already embedded in document
+	 */
+	public void renderToPdfPage(PdfDocument document, PdfGraphicsResources resources) {
 		final Rectangle2D bounds = graphicsBounds(1);
-		final PdfPage page = document.getPdfDocument().addNewPage(new PageSize((float) bounds.getWidth(), (float) bounds.getHeight()));
+		final PdfPage page = document.addNewPage(new PageSize((float) bounds.getWidth(), (float) bounds.getHeight()));
 		final PdfCanvas pdfCanvas = new PdfCanvas(page);
-		final PdfGraphics2D graphics = new PdfGraphics2D(pdfCanvas, 0, 0, (float) bounds.getWidth(), (float) bounds.getHeight(), true);
+		final PdfGraphics2D graphics = new PdfGraphics2D(pdfCanvas, 0, 0, (float) bounds.getWidth(), (float) bounds.getHeight(), true, resources);
 		graphics.translate(-bounds.getX(), -bounds.getY());
 		graphics.setFont(FontProperties.DEFAULT_FONT);
 		graphics.setRenderingHint(
@@ -254,9 +419,7 @@ public class DiagramRenderer implements RasterRenderer {
 		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 		this.canvas.render(graphics);
 		pdfCanvas.release();
-		document.close();
-		// Create the reading mode document
-		return new Document(new PdfDocument(new PdfReader(new ByteArrayInputStream(os.toByteArray()))));
+		page.flush();
 	}
 
 	private void layout() {
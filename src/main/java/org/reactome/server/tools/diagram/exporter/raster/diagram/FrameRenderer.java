@@ -0,0 +1,105 @@
+package org.reactome.server.tools.diagram.exporter.raster.diagram;
+
+import org.reactome.server.tools.diagram.exporter.raster.diagram.layers.Layer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Renders the frames of an animated GIF. Layers that do not change from one
+ * frame to the next are rasterized only once: the ones below the first dynamic
+ * layer into an opaque base image, and every following group of static layers
+ * into a transparent overlay. A frame is then a copy of the base with the
+ * dynamic layers and the overlays drawn on top, keeping the original layer
+ * order.
+ *
+ * @see DiagramRenderer#renderToAnimatedGif(java.io.OutputStream)
+ */
+class FrameRenderer {
+
+	private final int width;
+	private final int height;
+	private final BiFunction<BufferedImage, String, Graphics2D> graphicsFactory;
+	private final BufferedImage base;
+	private final List<Step> steps = new ArrayList<>();
+
+	/**
+	 * @param layers          all the layers, in rendering order
+	 * @param dynamic         the layers that will change between frames
+	 * @param width           width of the frames
+	 * @param height          height of the frames
+	 * @param graphicsFactory creates a Graphics2D, with the diagram transform
+	 *                        and rendering hints, for an image and a format
+	 */
+	FrameRenderer(List<Layer> layers, Collection<Layer> dynamic, int width, int height, BiFunction<BufferedImage, String, Graphics2D> graphicsFactory) {
+		this.width = width;
+		this.height = height;
+		this.graphicsFactory = graphicsFactory;
+		final List<List<Layer>> groups = new ArrayList<>();
+		final List<Boolean> dynamicGroups = new ArrayList<>();
+		for (Layer layer : layers) {
+			final boolean isDynamic = dynamic.contains(layer);
+			// empty static layers are skipped, so their neighbours are merged
+			if (!isDynamic && layer.isEmpty()) continue;
+			if (groups.isEmpty() || isDynamic != dynamicGroups.get(dynamicGroups.size() - 1)) {
+				groups.add(new ArrayList<>());
+				dynamicGroups.add(isDynamic);
+			}
+			groups.get(groups.size() - 1).add(layer);
+		}
+
+		base = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final Graphics2D graphics = graphicsFactory.apply(base, "gif");
+		for (int i = 0; i < groups.size(); i++) {
+			final List<Layer> group = groups.get(i);
+			if (dynamicGroups.get(i)) {
+				steps.add(new Step(group, null));
+			} else if (i == 0) {
+				// the first static group is drawn directly on the background
+				group.forEach(layer -> layer.render(graphics));
+			} else {
+				final BufferedImage overlay = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+				final Graphics2D overlayGraphics = graphicsFactory.apply(overlay, "png");
+				group.forEach(layer -> layer.render(overlayGraphics));
+				overlayGraphics.dispose();
+				steps.add(new Step(group, overlay));
+			}
+		}
+		graphics.dispose();
+	}
+
+	/**
+	 * Creates a new frame with the current content of the dynamic layers.
+	 */
+	BufferedImage render() {
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		base.copyData(image.getRaster());
+		final Graphics2D graphics = image.createGraphics();
+		for (Step step : steps) {
+			if (step.overlay == null) {
+				final Graphics2D layerGraphics = graphicsFactory.apply(image, "png");
+				step.layers.forEach(layer -> layer.render(layerGraphics));
+				layerGraphics.dispose();
+			} else graphics.drawImage(step.overlay, 0, 0, null);
+		}
+		graphics.dispose();
+		return image;
+	}
+
+	private static class Step {
+		private final List<Layer> layers;
+		/**
+		 * null for dynamic layers
+		 */
+		private final BufferedImage overlay;
+
+		Step(List<Layer> layers, BufferedImage overlay) {
+			this.layers = layers;
+			this.overlay = overlay;
+		}
+	}
+}
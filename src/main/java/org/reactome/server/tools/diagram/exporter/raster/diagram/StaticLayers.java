@@ -0,0 +1,88 @@
+package org.reactome.server.tools.diagram.exporter.raster.diagram;
+
+import org.reactome.server.tools.diagram.exporter.common.cache.CacheStats;
+import org.reactome.server.tools.diagram.exporter.common.cache.LruResourceCache;
+import org.reactome.server.tools.diagram.exporter.common.cache.ResourceCache;
+import org.reactome.server.tools.diagram.exporter.raster.diagram.common.DiagramIndex;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Rasterized layers of a diagram that are the same for every request with the
+ * same profile and quality: the layers below the flags, drawn over the
+ * background, and the layers above the selection of attachments, drawn over a
+ * transparent image. Flag and halo requests only need to draw the decoration
+ * layers between them.
+ *
+ * @see DiagramRenderer#render()
+ */
+class StaticLayers {
+
+	private static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+
+	private static volatile ResourceCache<String, StaticLayers> cache = new LruResourceCache<>(DEFAULT_CACHE_SIZE);
+
+	private final BufferedImage below;
+	private final BufferedImage above;
+
+	StaticLayers(BufferedImage below, BufferedImage above) {
+		this.below = below;
+		this.above = above;
+	}
+
+	/**
+	 * @param key   identifies the diagram, profile, quality and format
+	 * @param index index of the diagram. The layers of a previous version of
+	 *              the diagram are not returned
+	 *
+	 * @return the cached layers, or null
+	 */
+	static StaticLayers get(String key, DiagramIndex index) {
+		final ResourceCache<String, StaticLayers> cache = StaticLayers.cache;
+		return cache == null ? null : cache.get(key, index);
+	}
+
+	/**
+	 * @return true if the layers of an image of width x height can be stored
+	 * in the cache
+	 */
+	static boolean fits(int width, int height) {
+		final ResourceCache<String, StaticLayers> cache = StaticLayers.cache;
+		return cache != null && weight(width, height) <= cache.getStats().getMaxWeight();
+	}
+
+	static void put(String key, DiagramIndex index, StaticLayers layers) {
+		final ResourceCache<String, StaticLayers> cache = StaticLayers.cache;
+		if (cache != null) cache.put(key, index, layers, layers.getWeight());
+	}
+
+	/**
+	 * @param maxWeight max size in bytes of the cached images, 0 to disable
+	 *                  the cache
+	 */
+	static void setCacheSize(long maxWeight) {
+		StaticLayers.cache = maxWeight > 0 ? new LruResourceCache<>(maxWeight) : null;
+	}
+
+	static CacheStats getCacheStats() {
+		final ResourceCache<String, StaticLayers> cache = StaticLayers.cache;
+		return cache == null ? null : cache.getStats();
+	}
+
+	BufferedImage getBelow() {
+		return below;
+	}
+
+	BufferedImage getAbove() {
+		return above;
+	}
+
+	private long getWeight() {
+		return weight(below.getWidth(), below.getHeight());
+	}
+
+	private static long weight(int width, int height) {
+		// below and above, 4 bytes per pixel each
+		return 8L * width * height;
+	}
+}
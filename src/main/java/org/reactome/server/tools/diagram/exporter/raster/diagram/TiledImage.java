@@ -0,0 +1,214 @@
+package org.reactome.server.tools.diagram.exporter.raster.diagram;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+
+/**
+ * An image whose tiles are rendered on demand. Tiles are horizontal strips
+ * with the width of the image, so writers that read the image row by row, like
+ * the PNG writer, only keep a few strips in memory. The strips following the
+ * requested one are rendered in parallel, and the ones above it are released.
+ *
+ * @see DiagramRenderer#renderTiled()
+ */
+class TiledImage implements RenderedImage {
+
+	/**
+	 * approximate number of pixels per strip, 4MB for int pixels
+	 */
+	private static final int TILE_PIXELS = 1 << 20;
+
+	private final int width;
+	private final int height;
+	private final int tileHeight;
+	private final int imageType;
+	private final ColorModel colorModel;
+	private final SampleModel sampleModel;
+	private final BiConsumer<BufferedImage, Integer> painter;
+	private final Executor executor;
+	private final int window;
+	private final Map<Integer, CompletableFuture<BufferedImage>> tiles = new HashMap<>();
+
+	/**
+	 * @param width     width of the image
+	 * @param height    height of the image
+	 * @param imageType type of the strips, as in {@link BufferedImage}
+	 * @param painter   paints the content of a strip, given the strip and the
+	 *                  row of the image where it starts. Must be thread safe
+	 */
+	TiledImage(int width, int height, int imageType, BiConsumer<BufferedImage, Integer> painter) {
+		this(width, height, imageType, painter, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	/**
+	 * @param executor where strips are rendered
+	 * @param window   max number of strips rendered ahead of the requested
+	 *                 one
+	 */
+	TiledImage(int width, int height, int imageType, BiConsumer<BufferedImage, Integer> painter, Executor executor, int window) {
+		this.width = width;
+		this.height = height;
+		this.imageType = imageType;
+		this.painter = painter;
+		this.executor = executor;
+		this.window = Math.max(1, window);
+		this.tileHeight = Math.max(1, Math.min(height, TILE_PIXELS / Math.max(1, width)));
+		final BufferedImage sample = new BufferedImage(1, 1, imageType);
+		this.colorModel = sample.getColorModel();
+		this.sampleModel = sample.getSampleModel().createCompatibleSampleModel(width, tileHeight);
+	}
+
+	@Override
+	public Vector<RenderedImage> getSources() {
+		return null;
+	}
+
+	@Override
+	public Object getProperty(String name) {
+		return Image.UndefinedProperty;
+	}
+
+	@Override
+	public String[] getPropertyNames() {
+		return null;
+	}
+
+	@Override
+	public ColorModel getColorModel() {
+		return colorModel;
+	}
+
+	@Override
+	public SampleModel getSampleModel() {
+		return sampleModel;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getMinX() {
+		return 0;
+	}
+
+	@Override
+	public int getMinY() {
+		return 0;
+	}
+
+	@Override
+	public int getNumXTiles() {
+		return 1;
+	}
+
+	@Override
+	public int getNumYTiles() {
+		return (height + tileHeight - 1) / tileHeight;
+	}
+
+	@Override
+	public int getMinTileX() {
+		return 0;
+	}
+
+	@Override
+	public int getMinTileY() {
+		return 0;
+	}
+
+	@Override
+	public int getTileWidth() {
+		return width;
+	}
+
+	@Override
+	public int getTileHeight() {
+		return tileHeight;
+	}
+
+	@Override
+	public int getTileGridXOffset() {
+		return 0;
+	}
+
+	@Override
+	public int getTileGridYOffset() {
+		return 0;
+	}
+
+	@Override
+	public Raster getTile(int tileX, int tileY) {
+		if (tileX != 0 || tileY < 0 || tileY >= getNumYTiles())
+			throw new IllegalArgumentException(String.format("No tile at (%d, %d)", tileX, tileY));
+		return getStrip(tileY).getRaster().createTranslatedChild(0, tileY * tileHeight);
+	}
+
+	@Override
+	public Raster getData() {
+		return getData(new Rectangle(0, 0, width, height));
+	}
+
+	@Override
+	public Raster getData(Rectangle rect) {
+		final WritableRaster raster = Raster.createWritableRaster(
+				sampleModel.createCompatibleSampleModel(rect.width, rect.height), rect.getLocation());
+		copyData(raster);
+		return raster;
+	}
+
+	@Override
+	public WritableRaster copyData(WritableRaster raster) {
+		if (raster == null) raster = colorModel.createCompatibleWritableRaster(width, height);
+		final Rectangle bounds = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+		if (bounds.isEmpty()) return raster;
+		final int first = bounds.y / tileHeight;
+		final int last = (bounds.y + bounds.height - 1) / tileHeight;
+		for (int tileY = first; tileY <= last; tileY++)
+			raster.setRect(0, tileY * tileHeight, getStrip(tileY).getRaster());
+		return raster;
+	}
+
+	/**
+	 * Gets strip tileY, and starts rendering the next ones. Strips above
+	 * tileY are released, asking for them again renders them again.
+	 */
+	private BufferedImage getStrip(int tileY) {
+		final CompletableFuture<BufferedImage> future;
+		synchronized (tiles) {
+			tiles.keySet().removeIf(y -> y < tileY);
+			final int last = Math.min(getNumYTiles() - 1, tileY + window);
+			for (int y = tileY; y <= last; y++) {
+				final int top = y * tileHeight;
+				tiles.computeIfAbsent(y, key -> CompletableFuture.supplyAsync(() -> paint(top), executor));
+			}
+			future = tiles.get(tileY);
+		}
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+
+	private BufferedImage paint(int top) {
+		final BufferedImage strip = new BufferedImage(width, Math.min(tileHeight, height - top), imageType);
+		painter.accept(strip, top);
+		return strip;
+	}
+}
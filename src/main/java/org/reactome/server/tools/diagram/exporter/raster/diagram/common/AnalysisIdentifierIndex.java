@@ -0,0 +1,93 @@
+package org.reactome.server.tools.diagram.exporter.raster.diagram.common;
+
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+import org.reactome.server.analysis.core.result.model.FoundElements;
+import org.reactome.server.analysis.core.result.model.FoundEntity;
+import org.reactome.server.analysis.core.result.model.IdentifierMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Entities found by an analysis in each pathway, by the identifiers they map
+ * to. A pathway is indexed the first time a diagram is rendered with the same
+ * result and resource, and the index is shared by the next ones. Identifiers
+ * are shared by all the pathways of a result, so entities that appear in many
+ * pathways do not repeat their keys.
+ */
+class AnalysisIdentifierIndex {
+
+	// results are kept by the exporter while their token is in use, indexes
+	// are dropped with them
+	private static final Map<Object, AnalysisIdentifierIndex> INDEXES = new WeakHashMap<>();
+
+	private final Map<String, String> identifiers = new HashMap<>();
+	private final Map<String, Map<String, FoundEntity>> pathways = new HashMap<>();
+
+	private AnalysisIdentifierIndex() {
+	}
+
+	/**
+	 * @param result   analysis result
+	 * @param stId     stable identifier of the pathway
+	 * @param resource analysis resource
+	 *
+	 * @return the entities found in the pathway by the identifiers they map
+	 * to, or null if the analysis found nothing in the pathway. Do not modify
+	 */
+	static Map<String, FoundEntity> getEntities(AnalysisStoredResult result, String stId, String resource) {
+		return of(result).get(resource + ":" + stId, () -> result.getFoundElmentsForPathway(stId, resource));
+	}
+
+	/**
+	 * @return the index of owner, which is released when owner is no longer
+	 * referenced
+	 */
+	static AnalysisIdentifierIndex of(Object owner) {
+		synchronized (INDEXES) {
+			return INDEXES.computeIfAbsent(owner, o -> new AnalysisIdentifierIndex());
+		}
+	}
+
+	/**
+	 * @return number of indexed owners that are still referenced
+	 */
+	static int size() {
+		synchronized (INDEXES) {
+			return INDEXES.size();
+		}
+	}
+
+	/**
+	 * Elements are looked up outside the lock, so pathways of the same result
+	 * are indexed in parallel. If two threads index the same pathway, the
+	 * first one stored is returned to both.
+	 *
+	 * @param key    pathway and resource
+	 * @param loader looks up the elements found in the pathway
+	 */
+	Map<String, FoundEntity> get(String key, Supplier<FoundElements> loader) {
+		synchronized (this) {
+			if (pathways.containsKey(key)) return pathways.get(key);
+		}
+		final FoundElements foundElements = loader.get();
+		synchronized (this) {
+			if (pathways.containsKey(key)) return pathways.get(key);
+			final Map<String, FoundEntity> entities = foundElements == null ? null : index(foundElements);
+			pathways.put(key, entities);
+			return entities;
+		}
+	}
+
+	private Map<String, FoundEntity> index(FoundElements foundElements) {
+		final Map<String, FoundEntity> entities = new HashMap<>();
+		for (FoundEntity entity : foundElements.getEntities())
+			for (IdentifierMap identifierMap : entity.getMapsTo())
+				for (String id : identifierMap.getIds())
+					entities.put(identifiers.computeIfAbsent(id, i -> i), entity);
+		return Collections.unmodifiableMap(entities);
+	}
+}
@@ -11,10 +11,9 @@ import org.reactome.server.tools.diagram.exporter.raster.diagram.renderables.Ren
 import org.reactome.server.tools.diagram.exporter.raster.diagram.renderables.RenderableProcessNode;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
- * Computes the analysis data of the diagram. Adds to the DiagramIndex the
+ * Computes the analysis data of the diagram. Adds to the DiagramOverlay the
  * analysis info of each node. If the analysis is an ENRICHMENT or
  * SPECIES_COMPARISON, adds to each RenderableNode the percentage covered by the
  * analysis. If it is an EXPRESSION analysis, adds the hitExpression values. If
@@ -25,23 +24,26 @@ public class DiagramAnalysis {
 	public static final double MIN_ENRICHMENT = 0.05;
 	private static final double MIN_VISIBLE_ENRICHMENT = 0.05;
 	private final DiagramIndex index;
+	private final DiagramOverlay overlay;
 	private final RasterArgs args;
 	private final Graph graph;
 	private final AnalysisType type;
-	private Map<Long, EntityNode> graphIndex;
+	private GraphLeaves leaves;
 	private AnalysisStoredResult result;
 	private String resource;
 	private AnalysisResult summary;
 
 	/**
 	 * Instantiates a DiagramAnalysis. It will calculate values for nodes in case there is an analysis.
-	 *  @param index   diagram index
+	 * @param index   diagram index
+	 * @param overlay where analysis values are stored
 	 * @param graph   the underlying graph
 	 * @param args    raster arguments
 	 * @param result  analysis results
 	 */
-	DiagramAnalysis(DiagramIndex index, Graph graph, RasterArgs args, AnalysisStoredResult result) {
+	DiagramAnalysis(DiagramIndex index, DiagramOverlay overlay, Graph graph, RasterArgs args, AnalysisStoredResult result) {
 		this.index = index;
+		this.overlay = overlay;
 		this.args = args;
 		this.graph = graph;
 		this.result = result;
@@ -72,13 +74,12 @@ public class DiagramAnalysis {
 	}
 
 	private void clearIndex() {
-		graphIndex = null;
+		leaves = null;
 	}
 
 	private void index() {
 		// Indexes to map layout <-> graph. They share dbId
-		graphIndex = new HashMap<>();
-		graph.getNodes().forEach(item -> graphIndex.put(item.getDbId(), item));
+		leaves = GraphLeaves.of(graph);
 	}
 
 	/**
@@ -92,18 +93,19 @@ public class DiagramAnalysis {
 	}
 
 	private void addNodesData() {
-		final FoundElements foundElements = result.getFoundElmentsForPathway(args.getStId(), resource);
-		if (foundElements == null) return;
+		// analysis -> graph: analysis.mapsTo.ids.contains(graph.identifier)
+		final Map<String, FoundEntity> analysisIndex = AnalysisIdentifierIndex.getEntities(result, args.getStId(), resource);
+		if (analysisIndex == null) return;
 		switch (type) {
 			case SPECIES_COMPARISON:
 			case OVERREPRESENTATION:
-				addEnrichmentData(foundElements);
+				addEnrichmentData(analysisIndex.keySet());
 				break;
 			case EXPRESSION:
 			case GSA_STATISTICS:
 			case GSVA:
 			case GSA_REGULATION:
-				addExpressionData(foundElements);
+				addExpressionData(analysisIndex);
 				break;
 		}
 	}
@@ -118,7 +120,7 @@ public class DiagramAnalysis {
 		// Just a reminder: the same subpathway can appear twice in the diagram
 		// filterByPathway needs ids as strings
 		final List<String> ids = new ArrayList<>();
-		for (Long dbId : index.getPathwaysByReactomeId().keySet()) ids.add(String.valueOf(dbId));
+		for (long dbId : index.getPathwaysByReactomeId().keys()) ids.add(String.valueOf(dbId));
 		final List<PathwaySummary> summaries = result.filterByPathways(ids, resource, args.isImportableOnly());
 
 		for (PathwaySummary summary : summaries) {
@@ -132,8 +134,8 @@ public class DiagramAnalysis {
 			}
 			final Double median = computeMedian(entities.getExp());
 			for (RenderableProcessNode node : index.getPathwaysByReactomeId().get(summary.getDbId())) {
-				node.setEnrichmentPercentage(percentage);
-				node.setEnrichmentValue(median);  // TODO: 19/07/18 how subpathways behave in expression
+				overlay.setEnrichment(node, percentage);
+				overlay.setEnrichmentValue(node, median);  // TODO: 19/07/18 how subpathways behave in expression
 			}
 		}
 	}
@@ -153,86 +155,62 @@ public class DiagramAnalysis {
 	/**
 	 * Computes the list of expressions of components. For each diagram object,
 	 * except ProcessNodes, you get a list of lists of doubles
+	 *
+	 * @param analysisIndex found entities by the identifiers they map to
 	 */
-	private void addExpressionData(FoundElements foundElements) {
+	private void addExpressionData(Map<String, FoundEntity> analysisIndex) {
 		// There is no direct mapping diagram <-> analysis, so we map through graph
 		// analysis -> graph: analysis.mapsTo.id.contains(graph.identifier)
 		// graph -> layout:   layout.reactomeId == graph.dbId
-		// Index analysis nodes via mapsTo
-		final Map<String, FoundEntity> analysisIndex = new HashMap<>();
-		for (FoundEntity analysisNode : foundElements.getEntities()) {
-			for (IdentifierMap identifierMap : analysisNode.getMapsTo()) {
-				for (String id : identifierMap.getIds()) {
-					analysisIndex.put(id, analysisNode);
-				}
-			}
-		}
 		index.getNodesByReactomeId().forEach((id, objects) -> {
-			final EntityNode graphNode = graphIndex.get(id);
-			if (graphNode == null) return;
-			final List<FoundEntity> leaves = new ArrayList<>();
-			for (Long leafId : getLeaves(graphNode)) {
-				leaves.add(analysisIndex.get(graphIndex.get(leafId).getIdentifier()));
+			final int[] leafPositions = leaves.getLeaves(id);
+			if (leafPositions == null) return;
+			final List<FoundEntity> hits = new ArrayList<>(leafPositions.length);
+			for (int leaf : leafPositions) {
+				hits.add(analysisIndex.get(leaves.getNode(leaf).getIdentifier()));
 			}
 			for (RenderableDiagramObject object : objects) {
 				final RenderableNode renderableNode = (RenderableNode) object;
-				renderableNode.setHitExpressions(leaves);
+				overlay.setHitExpressions(renderableNode, hits);
 			}
 		});
 	}
 
 	/**
 	 * Computes only the relation of hit found components and found component
+	 *
+	 * @param identifiers identifiers found by the analysis in the pathway
 	 */
-	private void addEnrichmentData(FoundElements foundElements) {
-		// analysis -> graph: analysis.mapsTo.ids.contains(graph.identifier)
-		final Set<String> identifiers = foundElements.getEntities().stream()
-				.flatMap(foundEntity -> foundEntity.getMapsTo().stream())
-				.flatMap(identifierMap -> identifierMap.getIds().stream())
-				.collect(Collectors.toSet());
-		// graphNode.getIdentifier() -> graphNode.getDbId()
-		final Set<Long> graphNodeHit = new HashSet<>();
+	private void addEnrichmentData(Set<String> identifiers) {
+		// graphNode.getIdentifier() -> position of graphNode.getDbId()
+		final BitSet graphNodeHit = new BitSet(leaves.size());
 		for (EntityNode entityNode : graph.getNodes())
 			if (identifiers.contains(entityNode.getIdentifier()))
-				graphNodeHit.add(entityNode.getDbId());
+				graphNodeHit.set(leaves.indexOf(entityNode.getDbId()));
 		// run through the diagram nodes and compute the enrichment level for
 		// its associated graph node.
 		index.getNodesByReactomeId().forEach((id, objects) -> {
-			final EntityNode graphNode = graphIndex.get(id);
-			if (graphNode != null) {
-				double percentage = getPercentage(graphNodeHit, graphNode);
+			final int[] leafPositions = leaves.getLeaves(id);
+			if (leafPositions != null) {
+				double percentage = getPercentage(graphNodeHit, leafPositions);
 				for (RenderableDiagramObject object : objects) {
 					final RenderableNode renderableNode = (RenderableNode) object;
-					renderableNode.setEnrichmentPercentage(percentage);
+					overlay.setEnrichment(renderableNode, percentage);
 				}
 			}
 		});
 	}
 
-	private double getPercentage(Set<Long> hitIds, EntityNode graphNode) {
-		final Set<Long> leaves = getLeaves(graphNode);
-		final int total = leaves.size();
-		final long count = leaves.stream().filter(hitIds::contains).count();
+	private double getPercentage(BitSet hits, int[] leaves) {
+		final int total = leaves.length;
+		int count = 0;
+		for (int leaf : leaves) if (hits.get(leaf)) count++;
 		double percentage = (double) count / total;
 		if (percentage > 0 && percentage < MIN_VISIBLE_ENRICHMENT)
 			percentage = MIN_VISIBLE_ENRICHMENT;
 		return percentage;
 	}
 
-	private Set<Long> getLeaves(EntityNode node) {
-		if (node.getChildren() == null || node.getChildren().isEmpty()) {
-			return Collections.singleton(node.getDbId());
-		} else {
-			final Set<Long> set = new HashSet<>();
-			for (Long dbId : node.getChildren()) {
-				final EntityNode entityNode = graphIndex.get(dbId);
-				if (entityNode != null)
-					set.addAll(getLeaves(entityNode));
-			}
-			return set;
-		}
-	}
-
 	public AnalysisType getType() {
 		return type;
 	}
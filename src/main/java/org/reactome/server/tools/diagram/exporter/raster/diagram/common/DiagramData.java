@@ -13,11 +13,13 @@ import org.reactome.server.tools.diagram.exporter.raster.api.RasterArgs;
 public class DiagramData {
 
 	private final DiagramIndex index;
+	private final DiagramOverlay overlay;
 	private final DiagramDecorator decorator;
 	private final DiagramAnalysis analysis;
 
 	/**
-	 * Generates an index, a decorator and an analysis of the diagram.
+	 * Generates a decorator and an analysis of the diagram. The index is
+	 * shared with other requests on the same diagram.
 	 *
 	 * @param diagram the diagram to index
 	 * @param graph   the underlying graph
@@ -25,9 +27,10 @@ public class DiagramData {
 	 * @param result  analysis to overlay
 	 */
 	public DiagramData(Diagram diagram, Graph graph, RasterArgs args, AnalysisStoredResult result) {
-		this.index = new DiagramIndex(diagram);
-		this.decorator = new DiagramDecorator(index, args, graph);
-		this.analysis = new DiagramAnalysis(index, graph, args, result);
+		this.index = DiagramIndex.of(diagram);
+		this.overlay = new DiagramOverlay();
+		this.decorator = new DiagramDecorator(index, overlay, args, graph);
+		this.analysis = new DiagramAnalysis(index, overlay, graph, args, result);
 	}
 
 	public DiagramAnalysis getAnalysis() {
@@ -41,4 +44,8 @@ public class DiagramData {
 	public DiagramIndex getIndex() {
 		return index;
 	}
+
+	public DiagramOverlay getOverlay() {
+		return overlay;
+	}
 }
@@ -3,6 +3,8 @@ package org.reactome.server.tools.diagram.exporter.raster.diagram.common;
 import org.reactome.server.tools.diagram.data.graph.*;
 import org.reactome.server.tools.diagram.data.layout.Connector;
 import org.reactome.server.tools.diagram.data.layout.Edge;
+import org.reactome.server.tools.diagram.exporter.common.collections.LongHashSet;
+import org.reactome.server.tools.diagram.exporter.common.collections.LongObjectMap;
 import org.reactome.server.tools.diagram.exporter.raster.api.RasterArgs;
 import org.reactome.server.tools.diagram.exporter.raster.diagram.renderables.RenderableEdge;
 import org.reactome.server.tools.diagram.exporter.raster.diagram.renderables.RenderableNode;
@@ -14,24 +16,26 @@ import java.util.stream.Stream;
 
 /**
  * Includes the selection, flag and halo information for each node and reaction
- * and adds it to the corresponding RenderableObject.
+ * and adds it to the DiagramOverlay.
  */
 public class DiagramDecorator {
 
 	private final DiagramIndex index;
+	private final DiagramOverlay overlay;
 	private final RasterArgs args;
 	private final Graph graph;
 	// We need to keep a list of diagram ids of selected nodes for the legend
 	private Set<Long> selected = new HashSet<>();
 	// This would be the only necessary array if a list of dbId is passed through flag and selection
-	private Set<Long> graphIds;
+	private LongHashSet graphIds;
 	// Index of graph nodes only, for a faster parent/children access
-	private Map<Long, GraphNode> graphIndex;
+	private LongObjectMap<GraphNode> graphIndex;
 	// Map from stId to dbId
 	private Map<String, Long> graphMap;
 
-	DiagramDecorator(DiagramIndex index, RasterArgs args, Graph graph) {
+	DiagramDecorator(DiagramIndex index, DiagramOverlay overlay, RasterArgs args, Graph graph) {
 		this.index = index;
+		this.overlay = overlay;
 		this.args = args;
 		this.graph = graph;
 		decorate();
@@ -52,8 +56,8 @@ public class DiagramDecorator {
 	}
 
 	private void indexGraph() {
-		graphIndex = new HashMap<>();
-		graphIds = new HashSet<>();
+		graphIndex = new LongObjectMap<>(graph.getNodes().size());
+		graphIds = new LongHashSet(graph.getNodes().size() + graph.getEdges().size());
 		graphMap = new HashMap<>();
 		if (graph.getSubpathways() != null)
 			for (SubpathwayNode subpathway : graph.getSubpathways()) {
@@ -166,46 +170,46 @@ public class DiagramDecorator {
 			final Collection<RenderableNode> nodes = index.getNodesByReactomeId().get(id);
 			if (nodes != null) {
 				for (RenderableNode node : nodes) {
-					if (!node.isFadeOut()) node.setFlag(true);
+					if (!node.isFadeOut()) overlay.setFlag(node);
 				}
 				continue;
 			}
 			final Collection<RenderableProcessNode> pathways = index.getPathwaysByReactomeId().get(id);
 			if (pathways != null) {
 				for (RenderableProcessNode pathway : pathways) {
-					if (!pathway.isFadeOut()) pathway.setFlag(true);
+					if (!pathway.isFadeOut()) overlay.setFlag(pathway);
 				}
 				continue;
 			}
 			final Collection<RenderableEdge> edges = index.getEdgesByReactomeId().get(id);
 			if (edges != null)
 				for (RenderableEdge edge : edges) {
-					if (!edge.isFadeOut()) edge.setFlag(true);
+					if (!edge.isFadeOut()) overlay.setFlag(edge);
 				}
 		}
 	}
 
 	private void selectNode(RenderableNode node) {
-		node.setSelected(true);
-		node.setHalo(true);
+		overlay.setSelected(node);
+		overlay.setHalo(node);
 		this.selected.add(node.getNode().getId());
 		for (Connector connector : node.getNode().getConnectors()) {
 			final RenderableEdge renderableEdge = index.getEdgesById().get(connector.getEdgeId());
 			final Edge reaction = renderableEdge.getEdge();
 			// When a node is selected, the nodes in the same reaction are haloed
-			renderableEdge.setHalo(true);
+			overlay.setHalo(renderableEdge);
 			haloEdgeParticipants(reaction);
 		}
 	}
 
 	private void selectEdge(RenderableEdge edge) {
-		edge.setSelected(true);
-		edge.setHalo(true);
+		overlay.setSelected(edge);
+		overlay.setHalo(edge);
 		haloEdgeParticipants(edge.getEdge());
 	}
 
 	private void selectPathway(RenderableProcessNode pathway) {
-		pathway.setSelected(true);
+		overlay.setSelected(pathway);
 		this.selected.add(pathway.getNode().getId());
 	}
 
@@ -223,7 +227,7 @@ public class DiagramDecorator {
 				.flatMap(Collection::stream)
 				.map(part -> index.getNodesById().get(part.getId()))
 				.filter(node -> !node.isFadeOut())
-				.forEach(node -> node.setHalo(true));
+				.forEach(overlay::setHalo);
 	}
 
 	public Set<Long> getSelectedDiagramId() {
@@ -1,49 +1,74 @@
 package org.reactome.server.tools.diagram.exporter.raster.diagram.common;
 
 import org.reactome.server.tools.diagram.data.layout.*;
+import org.reactome.server.tools.diagram.exporter.common.collections.LongObjectMap;
+import org.reactome.server.tools.diagram.exporter.common.collections.ReadOnlyLongObjectMap;
 import org.reactome.server.tools.diagram.exporter.raster.diagram.renderables.*;
 
 import java.util.*;
 
 /**
  * Encapsulates every node in a RenderableDiagramObject and stores a dual index on diagram/graph id.
+ * The index is immutable, so it is built once per Diagram and shared by every request. Per request state
+ * lives in the {@link DiagramOverlay}, and maps are returned as read-only views. Ids are kept as primitive longs.
  *
  * @author Lorente-Arencibia, Pascual (pasculorente@gmail.com)
  */
 public class DiagramIndex {
 
-	private Map<Long, Collection<RenderableEdge>> edgesByReactomeId;
-	private Map<Long, RenderableEdge> edgesById;
+	// weak keys, so indexes go away with the diagrams evicted from the resources cache
+	private static final Map<Diagram, DiagramIndex> INDEXES = Collections.synchronizedMap(new WeakHashMap<>());
 
-	private Map<Long, Collection<RenderableNode>> nodesByReactomeId;
-	private Map<Long, RenderableNode> nodesById;
+	private ReadOnlyLongObjectMap<Collection<RenderableEdge>> edgesByReactomeId;
+	private ReadOnlyLongObjectMap<RenderableEdge> edgesById;
 
-	private Map<Long, Collection<RenderableProcessNode>> pathwaysByReactomeId;
-	private Map<Long, RenderableProcessNode> pathwaysById;
+	private ReadOnlyLongObjectMap<Collection<RenderableNode>> nodesByReactomeId;
+	private ReadOnlyLongObjectMap<RenderableNode> nodesById;
+
+	private ReadOnlyLongObjectMap<Collection<RenderableProcessNode>> pathwaysByReactomeId;
+	private ReadOnlyLongObjectMap<RenderableProcessNode> pathwaysById;
 
 	private Collection<RenderableCompartment> compartments;
 	private Collection<RenderableLink> links;
 	private Collection<RenderableDiagramObject> allNodes;
 
+	/**
+	 * Gets the index of diagram, creating it if this is the first time.
+	 *
+	 * @param diagram diagram with nodes and reactions
+	 * @return the shared index of diagram
+	 */
+	public static DiagramIndex of(Diagram diagram) {
+		final DiagramIndex index = INDEXES.get(diagram);
+		if (index != null) return index;
+		// built outside the lock, at worst two threads build the same index
+		final DiagramIndex newIndex = new DiagramIndex(diagram);
+		final DiagramIndex previous = INDEXES.putIfAbsent(diagram, newIndex);
+		return previous == null ? newIndex : previous;
+	}
+
 	/**
 	 * Creates a new DiagramIndex with the information for each node in maps.
 	 *
 	 * @param diagram diagram with nodes and reactions
 	 */
 	DiagramIndex(Diagram diagram) {
-		final Map<Long, Collection<RenderableEdge>> edgesByReactomeId = new HashMap<>();
-		final Map<Long, RenderableEdge> edgesById = new HashMap<>();
-		final Map<Long, Collection<RenderableNode>> nodesByReactomeId = new HashMap<>();
-		final Map<Long, RenderableNode> nodesById = new HashMap<>();
-		final Map<Long, Collection<RenderableProcessNode>> pathwaysByReactomeId = new HashMap<>();
-		final Map<Long, RenderableProcessNode> pathwaysById = new HashMap<>();
+		final int edges = diagram.getEdges().size();
+		final int nodes = diagram.getNodes().size();
+		final LongObjectMap<Collection<RenderableEdge>> edgesByReactomeId = new LongObjectMap<>(edges);
+		final LongObjectMap<RenderableEdge> edgesById = new LongObjectMap<>(edges);
+		final LongObjectMap<Collection<RenderableNode>> nodesByReactomeId = new LongObjectMap<>(nodes);
+		final LongObjectMap<RenderableNode> nodesById = new LongObjectMap<>(nodes);
+		final LongObjectMap<Collection<RenderableProcessNode>> pathwaysByReactomeId = new LongObjectMap<>();
+		final LongObjectMap<RenderableProcessNode> pathwaysById = new LongObjectMap<>();
 		final Collection<RenderableCompartment> compartments = new ArrayList<>();
 		final Collection<RenderableLink> links = new ArrayList<>();
 
 		for (Edge edge : diagram.getEdges()) {
 			final RenderableEdge renderableEdge = (RenderableEdge) RenderableFactory.getRenderableObject(edge);
 			edgesById.put(edge.getId(), renderableEdge);
-			edgesByReactomeId.computeIfAbsent(edge.getReactomeId(), dbId -> new ArrayList<>()).add(renderableEdge);
+			if (edge.getReactomeId() != null)
+				edgesByReactomeId.computeIfAbsent(edge.getReactomeId(), dbId -> new ArrayList<>()).add(renderableEdge);
 		}
 		for (Compartment compartment : diagram.getCompartments()) {
 			final RenderableDiagramObject renderableObject = RenderableFactory.getRenderableObject(compartment);
@@ -58,52 +83,66 @@ public class DiagramIndex {
 			if (renderableObject instanceof RenderableProcessNode) {
 				final RenderableProcessNode renderableProcessNode = (RenderableProcessNode) renderableObject;
 				pathwaysById.put(node.getId(), renderableProcessNode);
-				pathwaysByReactomeId.computeIfAbsent(node.getReactomeId(), dbId -> new ArrayList<>()).add(renderableProcessNode);
+				if (node.getReactomeId() != null)
+					pathwaysByReactomeId.computeIfAbsent(node.getReactomeId(), dbId -> new ArrayList<>()).add(renderableProcessNode);
 			} else {
 				final RenderableNode renderableNode = (RenderableNode) renderableObject;
 				nodesById.put(node.getId(), renderableNode);
-				nodesByReactomeId.computeIfAbsent(node.getReactomeId(), dbId -> new ArrayList<>()).add(renderableNode);
+				if (node.getReactomeId() != null)
+					nodesByReactomeId.computeIfAbsent(node.getReactomeId(), dbId -> new ArrayList<>()).add(renderableNode);
 			}
 		}
-		this.edgesById = Collections.unmodifiableMap(edgesById);
-		this.edgesByReactomeId = Collections.unmodifiableMap(edgesByReactomeId);
-		this.nodesById = Collections.unmodifiableMap(nodesById);
-		this.nodesByReactomeId = Collections.unmodifiableMap(nodesByReactomeId);
+		this.edgesById = LongObjectMap.unmodifiable(edgesById);
+		this.edgesByReactomeId = LongObjectMap.unmodifiable(edgesByReactomeId);
+		this.nodesById = LongObjectMap.unmodifiable(nodesById);
+		this.nodesByReactomeId = LongObjectMap.unmodifiable(nodesByReactomeId);
 		this.links = Collections.unmodifiableCollection(links);
 		this.compartments = Collections.unmodifiableCollection(compartments);
-		this.pathwaysById = Collections.unmodifiableMap(pathwaysById);
-		this.pathwaysByReactomeId = Collections.unmodifiableMap(pathwaysByReactomeId);
+		this.pathwaysById = LongObjectMap.unmodifiable(pathwaysById);
+		this.pathwaysByReactomeId = LongObjectMap.unmodifiable(pathwaysByReactomeId);
 
 		allNodes = new ArrayList<>();
 		allNodes.addAll(compartments);
 		allNodes.addAll(links);
-		allNodes.addAll(edgesById.values());
-		allNodes.addAll(nodesById.values());
-		allNodes.addAll(pathwaysById.values());
+		allNodes.addAll(inIdOrder(edgesById));
+		allNodes.addAll(inIdOrder(nodesById));
+		allNodes.addAll(inIdOrder(pathwaysById));
+
+	}
 
+	/**
+	 * layout() adds the objects to the layers in this order, so it is their z-order. Diagram ids are small and
+	 * dense, so this is also the order of the HashMaps objects used to be indexed in.
+	 */
+	private static <T> List<T> inIdOrder(LongObjectMap<T> map) {
+		final long[] ids = map.keys();
+		Arrays.sort(ids);
+		final List<T> objects = new ArrayList<>(ids.length);
+		for (long id : ids) objects.add(map.get(id));
+		return objects;
 	}
 
-	public Map<Long, Collection<RenderableEdge>> getEdgesByReactomeId() {
+	public ReadOnlyLongObjectMap<Collection<RenderableEdge>> getEdgesByReactomeId() {
 		return edgesByReactomeId;
 	}
 
-	public Map<Long, RenderableEdge> getEdgesById() {
+	public ReadOnlyLongObjectMap<RenderableEdge> getEdgesById() {
 		return edgesById;
 	}
 
-	public Map<Long, Collection<RenderableNode>> getNodesByReactomeId() {
+	public ReadOnlyLongObjectMap<Collection<RenderableNode>> getNodesByReactomeId() {
 		return nodesByReactomeId;
 	}
 
-	public Map<Long, RenderableNode> getNodesById() {
+	public ReadOnlyLongObjectMap<RenderableNode> getNodesById() {
 		return nodesById;
 	}
 
-	public Map<Long, Collection<RenderableProcessNode>> getPathwaysByReactomeId() {
+	public ReadOnlyLongObjectMap<Collection<RenderableProcessNode>> getPathwaysByReactomeId() {
 		return pathwaysByReactomeId;
 	}
 
-	public Map<Long, RenderableProcessNode> getPathwaysById() {
+	public ReadOnlyLongObjectMap<RenderableProcessNode> getPathwaysById() {
 		return pathwaysById;
 	}
 
@@ -0,0 +1,123 @@
+package org.reactome.server.tools.diagram.exporter.raster.diagram.common;
+
+import org.reactome.server.analysis.core.result.model.FoundEntity;
+import org.reactome.server.analysis.core.result.model.IdentifierSummary;
+import org.reactome.server.tools.diagram.exporter.raster.diagram.renderables.RenderableDiagramObject;
+import org.reactome.server.tools.diagram.exporter.raster.diagram.renderables.RenderableNode;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Per request state of the objects of a {@link DiagramIndex}: flag, selection
+ * and halo, set by the {@link DiagramDecorator}, and analysis values, set by
+ * the {@link DiagramAnalysis}. As the index is shared by every request on the
+ * same diagram, renderables must read this state from here, never store it.
+ */
+public class DiagramOverlay {
+
+	// renderables do not override equals, identity is enough and faster
+	private final Set<RenderableDiagramObject> flags = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final Set<RenderableDiagramObject> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final Set<RenderableDiagramObject> halo = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final Map<RenderableNode, NodeAnalysis> analysis = new IdentityHashMap<>();
+
+	DiagramOverlay() {
+	}
+
+	public boolean isFlag(RenderableDiagramObject object) {
+		return flags.contains(object);
+	}
+
+	void setFlag(RenderableDiagramObject object) {
+		flags.add(object);
+	}
+
+	public boolean isSelected(RenderableDiagramObject object) {
+		return selected.contains(object);
+	}
+
+	void setSelected(RenderableDiagramObject object) {
+		selected.add(object);
+	}
+
+	public boolean isHalo(RenderableDiagramObject object) {
+		return halo.contains(object);
+	}
+
+	void setHalo(RenderableDiagramObject object) {
+		halo.add(object);
+	}
+
+	/**
+	 * @return true if any object is selected. Unlike flags and halos, the
+	 * selection changes the borders of the objects
+	 */
+	public boolean hasSelection() {
+		return !selected.isEmpty();
+	}
+
+	/**
+	 * @return percentage of node covered by the analysis, or null if not in
+	 * the analysis
+	 */
+	public Double getEnrichment(RenderableNode node) {
+		final NodeAnalysis nodeAnalysis = analysis.get(node);
+		return nodeAnalysis == null ? null : nodeAnalysis.enrichment;
+	}
+
+	void setEnrichment(RenderableNode node, Double enrichment) {
+		analysis.computeIfAbsent(node, n -> new NodeAnalysis()).enrichment = enrichment;
+	}
+
+	/**
+	 * @return median of the expression values of the node, only for process
+	 * nodes
+	 */
+	public Double getEnrichmentValue(RenderableNode node) {
+		final NodeAnalysis nodeAnalysis = analysis.get(node);
+		return nodeAnalysis == null ? null : nodeAnalysis.enrichmentValue;
+	}
+
+	void setEnrichmentValue(RenderableNode node, Double enrichmentValue) {
+		analysis.computeIfAbsent(node, n -> new NodeAnalysis()).enrichmentValue = enrichmentValue;
+	}
+
+	/**
+	 * @return the expression values of the hit components of node, sorted by
+	 * id, or null if not in the analysis
+	 */
+	public List<FoundEntity> getHitExpressions(RenderableNode node) {
+		final NodeAnalysis nodeAnalysis = analysis.get(node);
+		return nodeAnalysis == null ? null : nodeAnalysis.hitExpressions;
+	}
+
+	/**
+	 * @return number of components of node, including the ones not hit
+	 */
+	public Integer getTotalExpressions(RenderableNode node) {
+		final NodeAnalysis nodeAnalysis = analysis.get(node);
+		return nodeAnalysis == null ? null : nodeAnalysis.totalExpressions;
+	}
+
+	/**
+	 * @param hitExpressions one value per component of node, null for the
+	 *                       ones not hit
+	 */
+	void setHitExpressions(RenderableNode node, List<FoundEntity> hitExpressions) {
+		final NodeAnalysis nodeAnalysis = analysis.computeIfAbsent(node, n -> new NodeAnalysis());
+		nodeAnalysis.hitExpressions = hitExpressions.stream()
+				.filter(Objects::nonNull)
+				.distinct()
+				.sorted((Comparator.comparing(IdentifierSummary::getId)))
+				.collect(Collectors.toList());
+		nodeAnalysis.totalExpressions = hitExpressions.size();
+	}
+
+	private static class NodeAnalysis {
+		private Double enrichment;
+		private Double enrichmentValue;
+		private List<FoundEntity> hitExpressions;
+		private Integer totalExpressions;
+	}
+}
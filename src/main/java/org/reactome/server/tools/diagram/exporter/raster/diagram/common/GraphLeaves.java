@@ -0,0 +1,152 @@
+package org.reactome.server.tools.diagram.exporter.raster.diagram.common;
+
+import org.reactome.server.tools.diagram.data.graph.EntityNode;
+import org.reactome.server.tools.diagram.data.graph.Graph;
+import org.reactome.server.tools.diagram.exporter.common.collections.LongObjectMap;
+
+import java.util.*;
+
+/**
+ * Leaves of every entity of a graph: the entity itself if it has no
+ * children, or the leaves of its children for complexes and sets. Entities
+ * get a dense position, and leaves are stored as arrays of positions. Leaves
+ * are expanded the first time they are requested, and shared sub-complexes
+ * are expanded only once. Graphs are shared by all the renders of the same
+ * diagram, so their leaves are too.
+ */
+class GraphLeaves {
+
+	private static final Map<Graph, GraphLeaves> LEAVES = new WeakHashMap<>();
+	private static final int[] EMPTY = new int[0];
+
+	// positions are the insertion order, the last node wins when there are
+	// repeated dbIds
+	private final LongObjectMap<EntityNode> nodes;
+	// null until expanded
+	private final int[][] leaves;
+	// positions already collected by distinct, clear between calls
+	private final BitSet seen;
+
+	private GraphLeaves(Graph graph) {
+		nodes = new LongObjectMap<>(graph.getNodes().size());
+		for (EntityNode node : graph.getNodes()) nodes.put(node.getDbId(), node);
+		leaves = new int[nodes.size()][];
+		seen = new BitSet(nodes.size());
+	}
+
+	/**
+	 * @return the leaves of graph
+	 */
+	static GraphLeaves of(Graph graph) {
+		synchronized (LEAVES) {
+			return LEAVES.computeIfAbsent(graph, GraphLeaves::new);
+		}
+	}
+
+	/**
+	 * @param position position of the node to expand
+	 * @param depths   depth of the nodes in the current path, 0 if the node is
+	 *                 not in the path
+	 * @param depth    depth of the node, starting at 1
+	 * @param low      the lowest depth reached by a cycle from the node is
+	 *                 stored in low[0]
+	 *
+	 * @return the positions of the leaves of the node, sorted as the dbIds of
+	 * a HashSet filled child by child, so expression stripes keep their order
+	 */
+	private int[] expand(int position, int[] depths, int depth, int[] low) {
+		if (leaves[position] != null) return leaves[position];
+		final EntityNode node = nodes.valueAt(position);
+		if (node.getChildren() == null || node.getChildren().isEmpty())
+			return leaves[position] = new int[]{position};
+		// a node that contains itself adds no more leaves to itself
+		if (depths[position] > 0) {
+			low[0] = Math.min(low[0], depths[position]);
+			return EMPTY;
+		}
+		depths[position] = depth;
+		final List<int[]> parts = new ArrayList<>(node.getChildren().size());
+		int total = 0;
+		final int outerLow = low[0];
+		low[0] = Integer.MAX_VALUE;
+		for (Long dbId : node.getChildren()) {
+			final int child = dbId == null ? -1 : nodes.indexOf(dbId);
+			if (child >= 0) {
+				final int[] part = expand(child, depths, depth + 1, low);
+				parts.add(part);
+				total += part.length;
+			}
+		}
+		depths[position] = 0;
+		final int[] result = toHashSetOrder(distinct(parts, total));
+		// the leaves of a node in a cycle with its ancestors are completed by
+		// the ancestors, so they are only stored when the cycle is closed
+		if (low[0] >= depth) leaves[position] = result;
+		low[0] = Math.min(low[0], outerLow);
+		return result;
+	}
+
+	/**
+	 * @return the positions in parts, without repeats, in the order they are
+	 * first found
+	 */
+	private int[] distinct(List<int[]> parts, int total) {
+		final int[] result = new int[total];
+		int size = 0;
+		for (int[] part : parts) {
+			for (int leaf : part) {
+				if (seen.get(leaf)) continue;
+				seen.set(leaf);
+				result[size++] = leaf;
+			}
+		}
+		for (int i = 0; i < size; i++) seen.clear(result[i]);
+		return size == total ? result : Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Sorts positions as the dbIds of a HashSet filled in the same order, as
+	 * the leaves used to be collected in one. The dbIds are boxed only here.
+	 */
+	private int[] toHashSetOrder(int[] positions) {
+		if (positions.length < 2) return positions.length == 0 ? EMPTY : positions;
+		final Set<Long> dbIds = new HashSet<>();
+		for (int position : positions) dbIds.add(nodes.keyAt(position));
+		int i = 0;
+		for (Long dbId : dbIds) positions[i++] = nodes.indexOf(dbId);
+		return positions;
+	}
+
+	/**
+	 * @return number of distinct entities in the graph
+	 */
+	int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * @return the position of the entity with dbId, or -1 if it is not in
+	 * the graph
+	 */
+	int indexOf(long dbId) {
+		return nodes.indexOf(dbId);
+	}
+
+	/**
+	 * @return the entity at position
+	 */
+	EntityNode getNode(int position) {
+		return nodes.valueAt(position);
+	}
+
+	/**
+	 * @return the positions of the leaves of the entity with dbId, or null if
+	 * it is not in the graph. Do not modify
+	 */
+	synchronized int[] getLeaves(long dbId) {
+		final int position = indexOf(dbId);
+		if (position < 0) return null;
+		if (leaves[position] != null) return leaves[position];
+		return expand(position, new int[nodes.size()], 1, new int[]{Integer.MAX_VALUE});
+	}
+}
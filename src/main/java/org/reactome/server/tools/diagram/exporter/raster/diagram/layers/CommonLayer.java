@@ -35,6 +35,33 @@ public abstract class CommonLayer implements Layer {
 		}
 	}
 
+	/**
+	 * Tiles are rendered with a clip, objects completely outside of it are
+	 * skipped.
+	 *
+	 * @param clip   clip bounds of the graphics, in user space, or null
+	 * @param bounds bounds of the object
+	 * @param margin space around bounds that can be painted, e.g. by strokes
+	 *               and antialiasing
+	 */
+	static boolean isOutside(Rectangle clip, Rectangle2D bounds, double margin) {
+		return clip != null
+				&& (bounds.getMaxX() + margin < clip.getMinX()
+				|| bounds.getMinX() - margin > clip.getMaxX()
+				|| bounds.getMaxY() + margin < clip.getMinY()
+				|| bounds.getMinY() - margin > clip.getMaxY());
+	}
+
+	/**
+	 * @return the space that stroke paints outside the shape, or infinity if
+	 * unknown
+	 */
+	static double margin(Stroke stroke) {
+		return stroke instanceof BasicStroke
+				? ((BasicStroke) stroke).getLineWidth() + 1
+				: Double.POSITIVE_INFINITY;
+	}
+
 	@Override
 	public void clear() {
 		minX = minY = maxY = maxX = null;
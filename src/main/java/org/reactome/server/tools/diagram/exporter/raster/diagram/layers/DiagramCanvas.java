@@ -1,10 +1,9 @@
 package org.reactome.server.tools.diagram.exporter.raster.diagram.layers;
 
-import org.reactome.server.tools.diagram.exporter.raster.diagram.renderables.DrugHelper;
-
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -89,12 +88,18 @@ public class DiagramCanvas {
 	public DiagramCanvas() {
 	}
 
+	/**
+	 * @return all the layers, in rendering order
+	 */
+	public List<Layer> getLayers() {
+		return Collections.unmodifiableList(layers);
+	}
+
 	/**
 	 * loops through layers in order, calling {@link Layer#render(Graphics2D)}
 	 * for each. This should create an Image in graphics.
 	 */
 	public void render(Graphics2D graphics) {
-		DrugHelper.setGraphics2D(graphics);
 		layers.forEach(layer -> layer.render(graphics));
 	}
 
@@ -1,6 +1,8 @@
 package org.reactome.server.tools.diagram.exporter.raster.diagram.layers;
 
 import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -11,22 +13,57 @@ import java.util.List;
  */
 public class DrawLayer extends CommonLayer {
 
+	/**
+	 * Rendering hint for SVG output. With {@link Boolean#TRUE}, the parts
+	 * added with {@link #add(List, Color, Stroke)} are drawn as a single path,
+	 * so they become one SVG element. Otherwise every part is drawn apart, as
+	 * a single path blends the antialiased pixels where parts meet only once.
+	 */
+	public static final RenderingHints.Key MERGE_PARTS = new BooleanKey(1);
+
 	private List<DrawObject> objects = new LinkedList<>();
 
 	public void add(Shape shape, Color color, Stroke stroke) {
 		addShape(shape);
-		objects.add(new DrawObject(shape, color, stroke));
+		objects.add(new DrawObject(shape, null, color, stroke));
+	}
+
+	/**
+	 * Adds shapes that are drawn with the same color and stroke, like the
+	 * segments of an edge. They are merged only if graphics has {@link
+	 * #MERGE_PARTS}.
+	 */
+	public void add(List<Shape> parts, Color color, Stroke stroke) {
+		if (parts.isEmpty()) return;
+		if (parts.size() == 1) {
+			add(parts.get(0), color, stroke);
+			return;
+		}
+		// every part is a separate subpath, as dashes and caps are per subpath
+		final Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO, 2 * parts.size());
+		for (Shape part : parts) path.append(part, false);
+		addShape(path);
+		objects.add(new DrawObject(path, parts, color, stroke));
 	}
 
 	@Override
 	public void render(Graphics2D graphics) {
+		final Rectangle clip = graphics.getClipBounds();
+		final boolean merge = Boolean.TRUE.equals(graphics.getRenderingHint(MERGE_PARTS));
 		objects.forEach(object -> {
+			if (isOutside(clip, object.bounds, margin(object.stroke))) return;
 			graphics.setPaint(object.color);
 			graphics.setStroke(object.stroke);
-			graphics.draw(object.shape);
+			if (object.parts == null || merge) graphics.draw(object.shape);
+			else object.parts.forEach(graphics::draw);
 		});
 	}
 
+	@Override
+	public boolean isEmpty() {
+		return objects.isEmpty();
+	}
+
 	@Override
 	public void clear() {
 		super.clear();
@@ -36,13 +73,30 @@ public class DrawLayer extends CommonLayer {
 	private class DrawObject {
 
 		private final Shape shape;
+		// the shapes merged in shape, or null
+		private final List<Shape> parts;
 		private final Color color;
 		private final Stroke stroke;
+		private final Rectangle2D bounds;
 
-		DrawObject(Shape shape, Color color, Stroke stroke) {
+		DrawObject(Shape shape, List<Shape> parts, Color color, Stroke stroke) {
 			this.shape = shape;
+			this.parts = parts;
+			this.bounds = shape.getBounds2D();
 			this.color = color;
 			this.stroke = stroke;
 		}
 	}
+
+	private static class BooleanKey extends RenderingHints.Key {
+
+		BooleanKey(int key) {
+			super(key);
+		}
+
+		@Override
+		public boolean isCompatibleValue(Object value) {
+			return value instanceof Boolean;
+		}
+	}
 }
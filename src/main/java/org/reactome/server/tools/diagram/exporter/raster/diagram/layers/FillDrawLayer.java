@@ -1,6 +1,7 @@
 package org.reactome.server.tools.diagram.exporter.raster.diagram.layers;
 
 import java.awt.*;
+import java.awt.geom.Rectangle2D;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -20,7 +21,9 @@ public class FillDrawLayer extends CommonLayer {
 
 	@Override
 	public void render(Graphics2D graphics) {
+		final Rectangle clip = graphics.getClipBounds();
 		for (DrawObject object : objects) {
+			if (isOutside(clip, object.bounds, margin(object.stroke))) continue;
 			graphics.setPaint(object.fill);
 			graphics.fill(object.shape);
 			graphics.setPaint(object.border);
@@ -29,6 +32,11 @@ public class FillDrawLayer extends CommonLayer {
 		}
 	}
 
+	@Override
+	public boolean isEmpty() {
+		return objects.isEmpty();
+	}
+
 	@Override
 	public void clear() {
 		super.clear();
@@ -40,9 +48,11 @@ public class FillDrawLayer extends CommonLayer {
 		private final Paint fill;
 		private final Paint border;
 		private final Stroke stroke;
+		private final Rectangle2D bounds;
 
 		DrawObject(Shape shape, Paint fill, Paint border, Stroke stroke) {
 			this.shape = shape;
+			this.bounds = shape.getBounds2D();
 			this.fill = fill;
 			this.border = border;
 			this.stroke = stroke;
@@ -1,6 +1,7 @@
 package org.reactome.server.tools.diagram.exporter.raster.diagram.layers;
 
 import java.awt.*;
+import java.awt.geom.Rectangle2D;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -18,12 +19,19 @@ public class FillLayer extends CommonLayer {
 
 	@Override
 	public void render(Graphics2D graphics) {
+		final Rectangle clip = graphics.getClipBounds();
 		objects.forEach(object -> {
+			if (isOutside(clip, object.bounds, 1)) return;
 			graphics.setPaint(object.color);
 			graphics.fill(object.shape);
 		});
 	}
 
+	@Override
+	public boolean isEmpty() {
+		return objects.isEmpty();
+	}
+
 	@Override
 	public void clear() {
 		super.clear();
@@ -33,9 +41,11 @@ public class FillLayer extends CommonLayer {
 	private class DrawObject {
 		private final Shape shape;
 		private final Paint color;
+		private final Rectangle2D bounds;
 
 		DrawObject(Shape shape, Paint color) {
 			this.shape = shape;
+			this.bounds = shape.getBounds2D();
 			this.color = color;
 		}
 	}
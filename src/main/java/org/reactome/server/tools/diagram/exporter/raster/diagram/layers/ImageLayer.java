@@ -31,6 +31,11 @@ public class ImageLayer extends CommonLayer {
 		);
 	}
 
+	@Override
+	public boolean isEmpty() {
+		return images.isEmpty();
+	}
+
 	@Override
 	public void clear() {
 		super.clear();
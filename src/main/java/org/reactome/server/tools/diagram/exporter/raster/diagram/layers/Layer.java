@@ -15,5 +15,10 @@ public interface Layer {
 
 	void clear();
 
+	/**
+	 * @return true if this layer has nothing to render
+	 */
+	boolean isEmpty();
+
 	Rectangle2D getBounds();
 }
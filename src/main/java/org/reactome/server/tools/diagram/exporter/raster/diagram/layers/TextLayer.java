@@ -8,6 +8,7 @@ import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * @author Lorente-Arencibia, Pascual (pasculorente@gmail.com)
@@ -21,6 +22,17 @@ public class TextLayer extends CommonLayer {
 		addShape(new Rectangle2D.Double(limits.getX(), limits.getY(), limits.getWidth(), limits.getHeight()));
 	}
 
+	/**
+	 * Adds a text whose limits depend on the font metrics of the graphics it
+	 * is rendered in, so they are computed on every render.
+	 *
+	 * @param bounds area that contains the limits in any graphics
+	 */
+	public void add(String text, Color color, Function<Graphics2D, NodeProperties> limits, Rectangle2D bounds, double padding, double splitText, Font font) {
+		objects.add(new RenderableText(text, limits, padding, splitText, color, font));
+		addShape(bounds);
+	}
+
 	public void add(Color color, String text, Coordinate position, Font font) {
 		objects.add(new RenderableText(text, position, color, font));
 	}
@@ -36,14 +48,20 @@ public class TextLayer extends CommonLayer {
 		objects.forEach(text -> {
 			graphics.setFont(text.font);
 			graphics.setPaint(text.color);
-			if (text.limits == null) {
+			if (text.position != null) {
 				TextRenderer.drawTextSingleLine(graphics, text.text, text.position);
 			} else {
-				TextRenderer.drawText(graphics, text.text, text.limits, text.padding, text.splitText);
+				final NodeProperties limits = text.limits == null ? text.measure.apply(graphics) : text.limits;
+				TextRenderer.drawText(graphics, text.text, limits, text.padding, text.splitText);
 			}
 		});
 	}
 
+	@Override
+	public boolean isEmpty() {
+		return objects.isEmpty();
+	}
+
 	@Override
 	public void clear() {
 		super.clear();
@@ -55,6 +73,7 @@ public class TextLayer extends CommonLayer {
 		private final String text;
 		private final Coordinate position;
 		private final NodeProperties limits;
+		private final Function<Graphics2D, NodeProperties> measure;
 		private double padding;
 		private double splitText;
 		private final Color color;
@@ -68,6 +87,18 @@ public class TextLayer extends CommonLayer {
 			this.color = color;
 			this.font = font;
 			this.position = null;
+			this.measure = null;
+		}
+
+		RenderableText(String text, Function<Graphics2D, NodeProperties> measure, double padding, double splitText, Color color, Font font) {
+			this.text = text;
+			this.measure = measure;
+			this.padding = padding;
+			this.splitText = splitText;
+			this.color = color;
+			this.font = font;
+			this.position = null;
+			this.limits = null;
 		}
 
 		RenderableText(String text, Coordinate position, Color color, Font font) {
@@ -76,6 +107,7 @@ public class TextLayer extends CommonLayer {
 			this.color = color;
 			this.font = font;
 			this.limits = null;
+			this.measure = null;
 		}
 	}
 
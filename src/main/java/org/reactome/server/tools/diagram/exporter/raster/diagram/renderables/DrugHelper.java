@@ -9,6 +9,7 @@ import org.reactome.server.tools.diagram.exporter.raster.diagram.layers.TextLaye
 import org.reactome.server.tools.diagram.exporter.raster.profiles.ColorProfiles;
 
 import java.awt.*;
+import java.awt.geom.Rectangle2D;
 
 /**
  * Adds a method for drug classes to render the Rx text.
@@ -25,21 +26,8 @@ public class DrugHelper {
 	}
 
 	// We cannot know the size of the text by just using the font, since it's graphics2D implementation dependent.
-	private static double WIDTH = 15;
-	private static double HEIGHT = 10;
-
-	/**
-	 * Updates the graphics2D information. This method should be call once per diagram.
-	 *
-	 * @param graphics2D current graphics2D
-	 */
-	public static void setGraphics2D(Graphics2D graphics2D) {
-		final Font defaultFont = FontProperties.DEFAULT_FONT;
-		final Font font = defaultFont.deriveFont(defaultFont.getSize2D() - 2);
-		final FontMetrics metrics = graphics2D.getFontMetrics(font);
-		HEIGHT = metrics.getHeight() + 2;
-		WIDTH = metrics.charsWidth(RX.toCharArray(), 0, RX.length()) + 2;
-	}
+	// The text is measured with the graphics2D it is rendered in, on every render
+	private static final Font FONT = FontProperties.DEFAULT_FONT.deriveFont(FontProperties.DEFAULT_FONT.getSize2D() - 2);
 
 	/**
 	 * Adds a Rx text in the bottom right corner of the node.
@@ -56,11 +44,18 @@ public class DrugHelper {
 				? canvas.getFadeOutText()
 				: canvas.getText();
 		final NodeProperties prop = node.getNode().getProp();
-		final NodeProperties position = NodePropertiesFactory.get(
-				prop.getX() + prop.getWidth() - WIDTH - xOff,
-				prop.getY() + prop.getHeight() - HEIGHT - yOff,
-				WIDTH, HEIGHT);
-		textLayer.add(RX, text, position, 1, 0, FontProperties.DEFAULT_FONT);
+		final Rectangle2D bounds = new Rectangle2D.Double(prop.getX(), prop.getY(), prop.getWidth(), prop.getHeight());
+		textLayer.add(RX, text, graphics -> getPosition(graphics, prop, xOff, yOff), bounds, 1, 0, FontProperties.DEFAULT_FONT);
+	}
+
+	private static NodeProperties getPosition(Graphics2D graphics, NodeProperties prop, double xOff, double yOff) {
+		final FontMetrics metrics = graphics.getFontMetrics(FONT);
+		final double height = metrics.getHeight() + 2;
+		final double width = metrics.charsWidth(RX.toCharArray(), 0, RX.length()) + 2;
+		return NodePropertiesFactory.get(
+				prop.getX() + prop.getWidth() - width - xOff,
+				prop.getY() + prop.getHeight() - height - yOff,
+				width, height);
 	}
 
 }
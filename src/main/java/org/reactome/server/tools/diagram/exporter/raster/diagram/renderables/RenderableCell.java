@@ -55,7 +55,7 @@ public class RenderableCell extends RenderableNode {
     public void draw(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
         super.draw(canvas, colorProfiles, data, t);
         // Inner shape
-        final Color border = getStrokeColor(colorProfiles, data.getAnalysis().getType());
+        final Color border = getStrokeColor(colorProfiles, data);
         final Shape shape = ShapeFactory.roundedRectangle(getNode().getProp(), PADDING, CELL_ARC);
         final Stroke stroke = StrokeStyle.SEGMENT.get(isDashed());
         final DrawLayer strokeLayer = isFadeOut()
@@ -29,32 +29,50 @@ public class RenderableChemicalDrug extends RenderableChemical {
 		chemicalBox(canvas, colorProfiles, data, t);
 	}
 
+	@Override
+	public void drawColumn(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
+		super.drawColumn(canvas, colorProfiles, data, t);
+		// faded out boxes don't show analysis colours
+		if (!isFadeOut()) chemicalBoxShape(canvas, colorProfiles, data, t);
+	}
+
 	private void chemicalBox(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
-		final Color fill = getFillColor(colorProfiles, data, t);
-		final Color border = getAttachmentStrokeColor(colorProfiles, data.getAnalysis().getType());
+		chemicalBoxShape(canvas, colorProfiles, data, t);
 		final Color text = getTextColor(colorProfiles, data.getAnalysis().getType());
-		final Stroke stroke = StrokeStyle.SEGMENT.get(isDashed());
-		final FillDrawLayer fillDrawLayer = isFadeOut()
-				? canvas.getFadeOutAttachments()
-				: canvas.getAttachments();
 		final TextLayer textLayer = isFadeOut()
 				? canvas.getFadeOutText()
 				: canvas.getText();
-		final NodeProperties prop = getNode().getProp();
-		final double x = prop.getX() + prop.getWidth() - 14;
-		final double y = prop.getY() + prop.getHeight() - 7;
-		final NodeProperties attachment = NodePropertiesFactory.get(x, y, 14, 7);
+		final NodeProperties attachment = boxProperties();
 		final Shape shape = ShapeFactory.rectangle(attachment);
-		fillDrawLayer.add(shape, fill, border, stroke);
 		textLayer.add("Rx", text, attachment, 1, 0, FontProperties.DEFAULT_FONT);
-		if (isFlag())
+		if (isFlag(data))
 			canvas.getFlags().add(shape, colorProfiles.getDiagramSheet().getProperties().getFlag(), StrokeStyle.FLAG.get(isDashed()));
-		if (isHalo())
+		if (isHalo(data))
 			canvas.getHalo().add(shape, colorProfiles.getDiagramSheet().getProperties().getHalo(), StrokeStyle.HALO.get(isDashed()));
-		if (isSelected())
+		if (isSelected(data))
 			canvas.getAttachmentSelection().add(shape, colorProfiles.getDiagramSheet().getProperties().getSelection(), StrokeStyle.SELECTION.get(isDashed()));
 	}
 
+	/**
+	 * The Rx box is filled with the expression colour of column t
+	 */
+	private void chemicalBoxShape(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
+		final Color fill = getFillColor(colorProfiles, data, t);
+		final Color border = getAttachmentStrokeColor(colorProfiles, data.getAnalysis().getType());
+		final Stroke stroke = StrokeStyle.SEGMENT.get(isDashed());
+		final FillDrawLayer fillDrawLayer = isFadeOut()
+				? canvas.getFadeOutAttachments()
+				: canvas.getAttachments();
+		fillDrawLayer.add(ShapeFactory.rectangle(boxProperties()), fill, border, stroke);
+	}
+
+	private NodeProperties boxProperties() {
+		final NodeProperties prop = getNode().getProp();
+		final double x = prop.getX() + prop.getWidth() - 14;
+		final double y = prop.getY() + prop.getHeight() - 7;
+		return NodePropertiesFactory.get(x, y, 14, 7);
+	}
+
 	private Color getFillColor(ColorProfiles colorProfiles, DiagramData index, int t) {
 		if (isFadeOut())
 			return getColorProfile(colorProfiles).getFadeOutFill();
@@ -65,17 +83,17 @@ public class RenderableChemicalDrug extends RenderableChemical {
 		// enrichment
 		if (index.getAnalysis().getType() == AnalysisType.SPECIES_COMPARISON
 				|| index.getAnalysis().getType() == AnalysisType.OVERREPRESENTATION) {
-			if (getEnrichment() != null && getEnrichment() > 0)
+			if (getEnrichment(index) != null && getEnrichment(index) > 0)
 				return colorProfiles.getAnalysisSheet().getEnrichment().getGradient().getMax();
 			else
 				return getColorProfile(colorProfiles).getLighterFill();
 		}
 		// expression
-		if (getHitExpressions() == null
-				|| getHitExpressions().isEmpty()) {
+		if (getHitExpressions(index) == null
+				|| getHitExpressions(index).isEmpty()) {
 			return getColorProfile(colorProfiles).getLighterFill();
 		} else {
-			final double exp = getHitExpressions().get(0).getExp().get(t);
+			final double exp = getHitExpressions(index).get(0).getExp().get(t);
 			final double min = index.getAnalysis().getResult().getExpression().getMin();
 			final double max = index.getAnalysis().getResult().getExpression().getMax();
 			final double value = 1 - (exp - min) / (max - min);
@@ -43,7 +43,7 @@ public class RenderableCompartment extends RenderableNodeCommon<Compartment> {
 	public void draw(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
 		final Stroke stroke = StrokeStyle.BORDER.get(false);
 		final Color fill = getFillColor(colorProfiles, data.getAnalysis().getType());
-		final Color border = getStrokeColor(colorProfiles, data.getAnalysis().getType());
+		final Color border = getStrokeColor(colorProfiles, data);
 		final Color text = getTextColor(colorProfiles, data.getAnalysis().getType());
 		// Inner color is the sum of the fill color with itself
 		final Color innerColor = ColorFactory.blend(fill, fill);
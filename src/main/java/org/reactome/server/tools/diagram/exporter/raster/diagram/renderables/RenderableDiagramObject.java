@@ -10,17 +10,15 @@ import org.reactome.server.tools.diagram.exporter.raster.profiles.NodeColorSheet
 import java.awt.*;
 
 /**
- * Contains decorator information for a DiagramObject: flag, selection and
- * halo.
+ * Rendering information for a DiagramObject. Renderables are shared by every
+ * request on the same diagram, so per request state (flag, selection and
+ * halo) is read from the DiagramOverlay.
  */
 public abstract class RenderableDiagramObject<T extends DiagramObject> {
 
 	private final boolean fadeOut;
 	private final boolean disease;
 	private final T diagramObject;
-	private boolean flag = false;
-	private boolean selected = false;
-	private boolean halo = false;
 
 	RenderableDiagramObject(T diagramObject) {
 		this.diagramObject = diagramObject;
@@ -28,28 +26,16 @@ public abstract class RenderableDiagramObject<T extends DiagramObject> {
 		this.disease = diagramObject.getIsDisease() != null && diagramObject.getIsDisease();
 	}
 
-	public boolean isFlag() {
-		return flag;
+	public boolean isFlag(DiagramData data) {
+		return data.getOverlay().isFlag(this);
 	}
 
-	public void setFlag(boolean flag) {
-		this.flag = flag;
+	public boolean isSelected(DiagramData data) {
+		return data.getOverlay().isSelected(this);
 	}
 
-	public boolean isSelected() {
-		return selected;
-	}
-
-	public void setSelected(boolean selected) {
-		this.selected = selected;
-	}
-
-	public boolean isHalo() {
-		return halo;
-	}
-
-	public void setHalo(boolean halo) {
-		this.halo = halo;
+	public boolean isHalo(DiagramData data) {
+		return data.getOverlay().isHalo(this);
 	}
 
 	public boolean isDisease() {
@@ -70,9 +56,10 @@ public abstract class RenderableDiagramObject<T extends DiagramObject> {
 	public abstract void draw(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t);
 
 
-	Color getStrokeColor(ColorProfiles colorProfiles, AnalysisType type) {
+	Color getStrokeColor(ColorProfiles colorProfiles, DiagramData data) {
+		final AnalysisType type = data.getAnalysis().getType();
 		// selection -> disease -> fadeout -> analysis -> normal
-		if (isSelected())
+		if (isSelected(data))
 			return colorProfiles.getDiagramSheet().getProperties().getSelection();
 		if (isDisease())
 			return colorProfiles.getDiagramSheet().getProperties().getDisease();
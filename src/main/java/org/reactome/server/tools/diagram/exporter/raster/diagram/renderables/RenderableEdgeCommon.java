@@ -19,7 +19,7 @@ import org.reactome.server.tools.diagram.exporter.raster.profiles.ColorProfiles;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -42,10 +42,10 @@ public abstract class RenderableEdgeCommon<T extends EdgeCommon> extends Rendera
 
 	@Override
 	public void draw(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
-		final Color linesColor = getStrokeColor(colorProfiles, data.getAnalysis().getType());
+		final Color linesColor = getStrokeColor(colorProfiles, data);
 		final Color fillColor = getFillColor(colorProfiles, data.getAnalysis().getType());
-		segments(linesColor, canvas, colorProfiles);
-		shapes(linesColor, canvas, colorProfiles);
+		segments(linesColor, canvas, colorProfiles, data);
+		shapes(linesColor, canvas, colorProfiles, data);
 	}
 
 	@Override
@@ -60,30 +60,26 @@ public abstract class RenderableEdgeCommon<T extends EdgeCommon> extends Rendera
 		return getColorProfile(colorProfiles).getFill();
 	}
 
-	private void segments(Color linesColor, DiagramCanvas canvas, ColorProfiles colorProfiles) {
-		final Collection<java.awt.Shape> segments = createSegments();
-		if (isHalo()) {
-			segments.forEach(shape -> canvas.getHalo().add(shape,
-					colorProfiles.getDiagramSheet().getProperties().getHalo(),
-					StrokeStyle.HALO.get(isDashed())
-			));
+	private void segments(Color linesColor, DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data) {
+		final List<java.awt.Shape> segments = createSegments();
+		if (isHalo(data)) {
+			final Color halo = colorProfiles.getDiagramSheet().getProperties().getHalo();
+			canvas.getHalo().add(segments, halo, StrokeStyle.HALO.get(isDashed()));
 		}
-		if (isFlag()) {
-			segments.forEach(shape -> canvas.getFlags().add(shape,
-					colorProfiles.getDiagramSheet().getProperties().getFlag(),
-					StrokeStyle.FLAG.get(isDashed())
-			));
+		if (isFlag(data)) {
+			final Color flag = colorProfiles.getDiagramSheet().getProperties().getFlag();
+			canvas.getFlags().add(segments, flag, StrokeStyle.FLAG.get(isDashed()));
 		}
 		final DrawLayer layer = isFadeOut()
 				? canvas.getFadeOutSegments()
 				: canvas.getSegments();
-		final Stroke stroke = isSelected()
+		final Stroke stroke = isSelected(data)
 				? StrokeStyle.SELECTION.get(isDashed())
 				: StrokeStyle.SEGMENT.get(isDashed());
-		segments.forEach(shape -> layer.add(shape, linesColor, stroke));
+		layer.add(segments, linesColor, stroke);
 	}
 
-	private void shapes(Color linesColor, DiagramCanvas canvas, ColorProfiles colorProfiles) {
+	private void shapes(Color linesColor, DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data) {
 		final FillDrawLayer layer = isFadeOut()
 				? canvas.getFadeOutEdgeShapes()
 				: canvas.getEdgeShapes();
@@ -91,14 +87,14 @@ public abstract class RenderableEdgeCommon<T extends EdgeCommon> extends Rendera
 				? canvas.getFadeOutText()
 				: canvas.getText();
 		final Stroke stroke = StrokeStyle.SEGMENT.getNormal(); // shapes not dashed
-		getRenderableShapes().forEach(shape -> drawShape(linesColor, canvas, colorProfiles, layer, textLayer, stroke, shape));
+		getRenderableShapes().forEach(shape -> drawShape(linesColor, canvas, colorProfiles, data, layer, textLayer, stroke, shape));
 	}
 
-	private void drawShape(Color linesColor, DiagramCanvas canvas, ColorProfiles colorProfiles, FillDrawLayer layer, TextLayer textLayer, Stroke stroke, Shape shape) {
+	private void drawShape(Color linesColor, DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, FillDrawLayer layer, TextLayer textLayer, Stroke stroke, Shape shape) {
 		if (shape == null) return;
 		final java.awt.Shape awtShape = ShapeFactory.getShape(shape);
-		if (isFlag()) flag(canvas, colorProfiles, awtShape);
-		if (isHalo()) halo(canvas, colorProfiles, awtShape);
+		if (isFlag(data)) flag(canvas, colorProfiles, awtShape);
+		if (isHalo(data)) halo(canvas, colorProfiles, awtShape);
 		final Color color = shape.getEmpty() != null && shape.getEmpty()
 				? Color.WHITE
 				: linesColor;
@@ -129,8 +125,9 @@ public abstract class RenderableEdgeCommon<T extends EdgeCommon> extends Rendera
 				StrokeStyle.HALO.get(isDashed()));
 	}
 
-	private Collection<java.awt.Shape> createSegments() {
-		final Collection<java.awt.Shape> segments = new LinkedList<>();
+	private List<java.awt.Shape> createSegments() {
+		if (getEdge().getSegments() == null) return Collections.emptyList();
+		final List<java.awt.Shape> segments = new ArrayList<>(getEdge().getSegments().size());
 		for (Segment segment : getEdge().getSegments())
 			segments.add(ShapeFactory.createLine(segment.getFrom(), segment.getTo()));
 		return segments;
@@ -144,10 +141,10 @@ public abstract class RenderableEdgeCommon<T extends EdgeCommon> extends Rendera
 	}
 
 	@Override
-	Color getStrokeColor(ColorProfiles colorProfiles, AnalysisType type) {
+	Color getStrokeColor(ColorProfiles colorProfiles, DiagramData data) {
 		// Note edges lines do not use analysis color (lighterStroke)
 		// selection -> disease -> fadeout -> normal
-		if (isSelected())
+		if (isSelected(data))
 			return colorProfiles.getDiagramSheet().getProperties().getSelection();
 		if (isDisease())
 			return colorProfiles.getDiagramSheet().getProperties().getDisease();
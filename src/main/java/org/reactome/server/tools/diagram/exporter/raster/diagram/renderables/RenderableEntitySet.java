@@ -36,7 +36,7 @@ public class RenderableEntitySet extends RenderableNode {
 	public void draw(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
 		super.draw(canvas, colorProfiles, data, t);
 		// Inner shape
-		final Color border = getStrokeColor(colorProfiles, data.getAnalysis().getType());
+		final Color border = getStrokeColor(colorProfiles, data);
 		final Shape shape = ShapeFactory.roundedRectangle(getNode().getProp(), SET_PADDING);
 		final Stroke stroke = StrokeStyle.BORDER.get(isDashed());
 		final DrawLayer layer = isFadeOut()
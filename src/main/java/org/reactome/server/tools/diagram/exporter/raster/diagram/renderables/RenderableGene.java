@@ -39,7 +39,7 @@ public class RenderableGene extends RenderableNode {
 	@Override
 	public void background(DiagramCanvas canvas, DiagramData data, ColorProfiles colorProfiles) {
 		final Color fill = getFillColor(colorProfiles, data.getAnalysis().getType());
-		final Color border = getStrokeColor(colorProfiles, data.getAnalysis().getType());
+		final Color border = getStrokeColor(colorProfiles, data);
 		// report: genes are not dashed in PathwayBrowser, although json file says needDashedBorder
 		final Stroke stroke = StrokeStyle.BORDER.get(false);
 		if (isFadeOut()) {
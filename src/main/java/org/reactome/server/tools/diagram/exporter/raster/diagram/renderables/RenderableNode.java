@@ -1,7 +1,6 @@
 package org.reactome.server.tools.diagram.exporter.raster.diagram.renderables;
 
 import org.reactome.server.analysis.core.result.model.FoundEntity;
-import org.reactome.server.analysis.core.result.model.IdentifierSummary;
 import org.reactome.server.tools.diagram.data.layout.Connector;
 import org.reactome.server.tools.diagram.data.layout.Node;
 import org.reactome.server.tools.diagram.data.layout.NodeProperties;
@@ -22,9 +21,7 @@ import org.reactome.server.tools.diagram.exporter.raster.profiles.GradientSheet;
 import java.awt.*;
 import java.awt.geom.Area;
 import java.awt.geom.Rectangle2D;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
 import java.util.stream.Collectors;
 
 public abstract class RenderableNode extends RenderableNodeCommon<Node> {
@@ -35,11 +32,6 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 
 	private final Area analysisArea;
 	private final Shape analysisShape;
-	private List<FoundEntity> hitExpressions;
-	private Double enrichment;
-	private Integer totalExpressions;
-	private Double enrichmentValue;
-
 
 
 	RenderableNode(Node node) {
@@ -61,40 +53,31 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 	}
 
 
-	public Double getEnrichment() {
-		return enrichment;
-	}
-
-	public void setEnrichmentPercentage(Double enrichment) {
-		this.enrichment = enrichment;
+	public Double getEnrichment(DiagramData data) {
+		return data.getOverlay().getEnrichment(this);
 	}
 
-	public List<FoundEntity> getHitExpressions() {
-		return hitExpressions;
+	public List<FoundEntity> getHitExpressions(DiagramData data) {
+		return data.getOverlay().getHitExpressions(this);
 	}
 
-	public void setHitExpressions(List<FoundEntity> hitExpressions) {
-		this.hitExpressions = hitExpressions.stream()
-				.filter(Objects::nonNull)
-				.distinct()
-				.sorted((Comparator.comparing(IdentifierSummary::getId)))
-				.collect(Collectors.toList());
-		this.totalExpressions = hitExpressions.size();
+	public Double getEnrichmentValue(DiagramData data) {
+		return data.getOverlay().getEnrichmentValue(this);
 	}
 
-	public Double getEnrichmentValue() {
-		return enrichmentValue;
+	private Integer getTotalExpressions(DiagramData data) {
+		return data.getOverlay().getTotalExpressions(this);
 	}
 
-	public void setEnrichmentValue(Double enrichmentValue) {
-		this.enrichmentValue = enrichmentValue;
-	}
-
-	private Integer getTotalExpressions() {
-		return totalExpressions;
+	Area getBackgroundArea() {
+		return backgroundArea;
 	}
 
-	Area getBackgroundArea() {
+	/**
+	 * Area filled with the background color in this request. The returned
+	 * Area is shared by every request, so it must not be modified.
+	 */
+	Area getBackgroundArea(DiagramData data) {
 		return backgroundArea;
 	}
 
@@ -107,8 +90,8 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 
 	@Override
 	public void draw(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
-		if (isFlag()) flag(canvas, colorProfiles);
-		if (isHalo()) halo(canvas, colorProfiles);
+		if (isFlag(data)) flag(canvas, colorProfiles);
+		if (isHalo(data)) halo(canvas, colorProfiles);
 		background(canvas, data, colorProfiles);
 		double textSplit = analysis(canvas, colorProfiles, data, t);
 		text(canvas, colorProfiles, data, textSplit);
@@ -116,6 +99,15 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 		connectors(canvas, colorProfiles, data);
 	}
 
+	/**
+	 * Draws only the parts of the node that depend on the analysis column
+	 * <em>t</em>. Used to update the frames of animated GIFs without drawing
+	 * the whole node again.
+	 */
+	public void drawColumn(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
+		analysis(canvas, colorProfiles, data, t);
+	}
+
 	void flag(DiagramCanvas canvas, ColorProfiles colorProfiles) {
 		canvas.getFlags().add(backgroundShape,
 				colorProfiles.getDiagramSheet().getProperties().getFlag(),
@@ -130,13 +122,13 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 
 	void background(DiagramCanvas canvas, DiagramData data, ColorProfiles colorProfiles) {
 		final Color fill = getFillColor(colorProfiles, data.getAnalysis().getType());
-		final Color border = getStrokeColor(colorProfiles, data.getAnalysis().getType());
+		final Color border = getStrokeColor(colorProfiles, data);
 
 		if (isFadeOut()) {
-			canvas.getFadeOutNodeForeground().add(backgroundArea, fill);
+			canvas.getFadeOutNodeForeground().add(getBackgroundArea(data), fill);
 			canvas.getFadeOutNodeBorder().add(backgroundShape, border, getBorderStroke().get(isDashed()));
 		} else {
-			canvas.getNodeBackground().add(backgroundArea, fill);
+			canvas.getNodeBackground().add(getBackgroundArea(data), fill);
 			canvas.getNodeBorder().add(backgroundShape, border, getBorderStroke().get(isDashed()));
 		}
 	}
@@ -146,7 +138,7 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 		switch (data.getAnalysis().getType()) {
 			case SPECIES_COMPARISON:
 			case OVERREPRESENTATION:
-				return enrichment(canvas, colorProfiles);
+				return enrichment(canvas, colorProfiles, data);
 			case EXPRESSION:
 				return expression(canvas, data, colorProfiles, t);
 			case GSA_REGULATION:
@@ -158,8 +150,8 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 		}
 	}
 
-	private double enrichment(DiagramCanvas canvas, ColorProfiles colorProfiles) {
-		final Double percentage = getEnrichment();
+	private double enrichment(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data) {
+		final Double percentage = getEnrichment(data);
 //		final NodeProperties prop = getNode().getProp();
 		Rectangle2D bounds = analysisShape.getBounds2D();
 		if (percentage != null && percentage > 0) {
@@ -171,7 +163,6 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 					bounds.getWidth() * percentage,
 					bounds.getHeight());
 			enrichmentArea.intersect(new Area(clip));
-			analysisArea.subtract(enrichmentArea);
 			canvas.getNodeAnalysis().add(enrichmentArea, color);
 		}
 		return 0.0;
@@ -185,13 +176,13 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 	 * white.
 	 */
 	double expression(DiagramCanvas canvas, DiagramData data, ColorProfiles colorProfiles, int t) {
-		final List<FoundEntity> expressions = getHitExpressions();
+		final List<FoundEntity> expressions = getHitExpressions(data);
 		double textSplit = 0.0;
 		if (expressions != null) {
 			final List<Double> values = expressions.stream()
 					.map(participant -> participant.getExp().get(t))
 					.collect(Collectors.toList());
-			final int size = getTotalExpressions();
+			final int size = getTotalExpressions(data);
 
 			Rectangle bounds = analysisShape.getBounds();
 			final double x = bounds.x;
@@ -210,10 +201,10 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 				final Color color = ColorFactory.interpolate(gradient, value);
 				final Rectangle2D rect = new Rectangle2D.Double(
 						x + i * partSize, y, partSize, height);
+				// strips don't overlap, so analysisArea can be shared by all of them
 				final Area expressionArea = new Area(rect);
-				expressionArea.intersect(new Area(analysisArea));
+				expressionArea.intersect(analysisArea);
 				canvas.getNodeAnalysis().add(expressionArea, color);
-				analysisArea.subtract(expressionArea);
 			}
 		}
 		if (this instanceof RenderableEntitySet || this instanceof RenderableComplex)
@@ -251,43 +242,43 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 		for (Connector connector : getNode().getConnectors()) {
 			final boolean fadeOut = connector.getIsFadeOut() != null && connector.getIsFadeOut();
 			final RenderableEdge edge = data.getIndex().getEdgesById().get(connector.getEdgeId());
-			final Color lineColor = getConnectorColor(colorProfiles, connector, edge);
+			final Color lineColor = getConnectorColor(colorProfiles, data, connector, edge);
 			final DrawLayer segmentsLayer = fadeOut ? canvas.getFadeOutSegments() : canvas.getSegments();
 			final FillDrawLayer shapeLayer = fadeOut ? canvas.getFadeOutEdgeShapes() : canvas.getEdgeShapes();
 			final TextLayer shapeTextLayer = fadeOut ? canvas.getFadeOutText() : canvas.getText();
 			final Stroke stroke;
 			if (fadeOut) stroke = StrokeStyle.SEGMENT.getNormal();
-			else if (edge.isSelected()) stroke = StrokeStyle.SELECTION.getNormal();
+			else if (edge.isSelected(data)) stroke = StrokeStyle.SELECTION.getNormal();
 			else stroke = StrokeStyle.SEGMENT.getNormal();
 			for (Segment segment : connector.getSegments()) {
-				drawSegment(canvas, colorProfiles, edge, lineColor, segmentsLayer, stroke, segment);
+				drawSegment(canvas, colorProfiles, data, edge, lineColor, segmentsLayer, stroke, segment);
 			}
 			if (connector.getEndShape() != null) {
-				drawShape(connector.getEndShape(), lineColor, connector.getEndShape().getS(), shapeLayer, shapeTextLayer, canvas, colorProfiles, edge);
+				drawShape(connector.getEndShape(), lineColor, connector.getEndShape().getS(), shapeLayer, shapeTextLayer, canvas, colorProfiles, data, edge);
 			}
 			if (connector.getStoichiometry() != null && connector.getStoichiometry().getValue() > 1) {
-				drawShape(connector.getStoichiometry().getShape(), lineColor, connector.getStoichiometry().getValue().toString(), shapeLayer, shapeTextLayer, canvas, colorProfiles, edge);
+				drawShape(connector.getStoichiometry().getShape(), lineColor, connector.getStoichiometry().getValue().toString(), shapeLayer, shapeTextLayer, canvas, colorProfiles, data, edge);
 			}
 		}
 	}
 
-	private void drawSegment(DiagramCanvas canvas, ColorProfiles colorProfiles, RenderableEdge edge, Color lineColor, DrawLayer segmentsLayer, Stroke stroke, Segment segment) {
+	private void drawSegment(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, RenderableEdge edge, Color lineColor, DrawLayer segmentsLayer, Stroke stroke, Segment segment) {
 		final Shape line = ShapeFactory.createLine(segment);
 		segmentsLayer.add(line, lineColor, stroke);
-		if (!isDashed() && !isFadeOut() && (isSelected() || edge.isSelected() || edge.isHalo()))
+		if (!isDashed() && !isFadeOut() && (isSelected(data) || edge.isSelected(data) || edge.isHalo(data)))
 			canvas.getHalo().add(line, colorProfiles.getDiagramSheet().getProperties().getHalo(), StrokeStyle.HALO.getNormal());
-		if (!isFadeOut() && edge.isFlag()) {
+		if (!isFadeOut() && edge.isFlag(data)) {
 			canvas.getFlags().add(line, colorProfiles.getDiagramSheet().getProperties().getFlag(), StrokeStyle.FLAG.getNormal());
 		}
 	}
 
-	private void drawShape(org.reactome.server.tools.diagram.data.layout.Shape rShape, Color lineColor, String s, FillDrawLayer shapeLayer, TextLayer textLayer, DiagramCanvas canvas, ColorProfiles colorProfiles, RenderableEdge edge) {
+	private void drawShape(org.reactome.server.tools.diagram.data.layout.Shape rShape, Color lineColor, String s, FillDrawLayer shapeLayer, TextLayer textLayer, DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, RenderableEdge edge) {
 		final Shape shape = ShapeFactory.getShape(rShape);
 		final Color fillColor = rShape.getEmpty() != null && rShape.getEmpty() ? Color.WHITE : lineColor;
 		shapeLayer.add(shape, fillColor, lineColor, StrokeStyle.SEGMENT.get(false));
-		if (!isDashed() && !isFadeOut() && (isSelected() || edge.isSelected() || edge.isHalo()))
+		if (!isDashed() && !isFadeOut() && (isSelected(data) || edge.isSelected(data) || edge.isHalo(data)))
 			canvas.getHalo().add(shape, colorProfiles.getDiagramSheet().getProperties().getHalo(), StrokeStyle.HALO.getNormal());
-		if (!isFadeOut() && edge.isFlag()) {
+		if (!isFadeOut() && edge.isFlag(data)) {
 			canvas.getFlags().add(shape, colorProfiles.getDiagramSheet().getProperties().getFlag(), StrokeStyle.FLAG.getNormal());
 		}
 		if (s != null && !s.isEmpty()) {
@@ -299,10 +290,10 @@ public abstract class RenderableNode extends RenderableNodeCommon<Node> {
 		}
 	}
 
-	private Color getConnectorColor(ColorProfiles colorProfiles, Connector connector, RenderableEdge edge) {
+	private Color getConnectorColor(ColorProfiles colorProfiles, DiagramData data, Connector connector, RenderableEdge edge) {
 		if (connector.getIsFadeOut() != null && connector.getIsFadeOut())
 			return colorProfiles.getDiagramSheet().getReaction().getFadeOutStroke();
-		if (edge.isSelected())
+		if (edge.isSelected(data))
 			return colorProfiles.getDiagramSheet().getProperties().getSelection();
 		if (connector.getIsDisease() != null && connector.getIsDisease())
 			return colorProfiles.getDiagramSheet().getProperties().getDisease();
@@ -71,26 +71,51 @@ public class RenderableProcessNode extends RenderableNode {
 		return getColorProfile(colorProfiles).getStroke();
 	}
 
+	/**
+	 * With expression and GSA analysis, the enrichment area is painted by
+	 * {@link #expression(DiagramCanvas, DiagramData, ColorProfiles, int)}
+	 * instead of the background.
+	 */
+	@Override
+	Area getBackgroundArea(DiagramData data) {
+		if (isFadeOut() || !hasFillOverlay(data.getAnalysis().getType())) return getBackgroundArea();
+		final Double percentage = getEnrichment(data);
+		if (percentage == null || percentage <= 0) return getBackgroundArea();
+		final Area area = new Area(getBackgroundArea());
+		area.subtract(enrichmentArea(percentage));
+		return area;
+	}
+
+	private static boolean hasFillOverlay(AnalysisType type) {
+		return type == AnalysisType.EXPRESSION
+				|| type == AnalysisType.GSA_REGULATION
+				|| type == AnalysisType.GSA_STATISTICS
+				|| type == AnalysisType.GSVA;
+	}
+
 	@Override
 	public double expression(DiagramCanvas canvas, DiagramData data, ColorProfiles colorProfiles, int t) {
-		final Double percentage = getEnrichment();
+		final Double percentage = getEnrichment(data);
 		if (percentage != null && percentage > 0) {
-			final NodeProperties prop = getNode().getProp();
 			final Color color = colorProfiles.getDiagramSheet().getProcessNode().getFill();
-			final Area enrichment = new Area(backgroundShape());
-			final Rectangle2D rectangle = new Rectangle2D.Double(
-					prop.getX() + prop.getWidth() * percentage,
-					prop.getY(),
-					prop.getWidth(),
-					prop.getHeight());
-			enrichment.intersect(new Area(rectangle));
-			getBackgroundArea().subtract(enrichment);
-			canvas.getNodeAnalysis().add(enrichment, color);
+			canvas.getNodeAnalysis().add(enrichmentArea(percentage), color);
 		}
 		// process node text is not split
 		return 0;
 	}
 
+	private Area enrichmentArea(double percentage) {
+		final NodeProperties prop = getNode().getProp();
+		final Area enrichment = new Area(backgroundShape());
+		final Rectangle2D rectangle = new Rectangle2D.Double(
+				prop.getX() + prop.getWidth() * percentage,
+				prop.getY(),
+				prop.getWidth(),
+				prop.getHeight());
+		enrichment.intersect(new Area(rectangle));
+		return enrichment;
+	}
+
 	@Override
 	public double gsa(DiagramCanvas canvas, DiagramData data, ColorProfiles colorProfiles, int t) {
 		return expression(canvas, data, colorProfiles, t);
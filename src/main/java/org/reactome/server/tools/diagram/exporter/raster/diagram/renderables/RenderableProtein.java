@@ -39,25 +39,26 @@ public class RenderableProtein extends RenderableNode {
 		attachments(canvas, colorProfiles, data, t);
 	}
 
+	@Override
+	public void drawColumn(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
+		super.drawColumn(canvas, colorProfiles, data, t);
+		// faded out attachments don't show analysis colours
+		if (!isFadeOut()) attachmentShapes(canvas, colorProfiles, data, t);
+	}
+
 	private void attachments(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
 		if (getNode().getNodeAttachments() == null || getNode().getNodeAttachments().isEmpty())
 			return;
-		final Color fill = getFillColor(colorProfiles, data, t);
-		final Color border = getStrokeColor(colorProfiles, data.getAnalysis().getType());
+		attachmentShapes(canvas, colorProfiles, data, t);
 		final Color text = getTextColor(colorProfiles, data.getAnalysis().getType());
-		final Stroke stroke = StrokeStyle.BORDER.getNormal();
-		final FillDrawLayer fillDrawLayer = isFadeOut()
-				? canvas.getFadeOutAttachments()
-				: canvas.getAttachments();
 		final TextLayer textLayer = isFadeOut()
 				? canvas.getFadeOutText()
 				: canvas.getText();
 		getNode().getNodeAttachments().forEach(nodeAttachment -> {
 			final org.reactome.server.tools.diagram.data.layout.Shape shape = nodeAttachment.getShape();
 			final Shape awtShape = ShapeFactory.getShape(shape);
-			fillDrawLayer.add(awtShape, fill, border, stroke);
-			if (isFlag()) canvas.getFlags().add(awtShape, colorProfiles.getDiagramSheet().getProperties().getFlag(), StrokeStyle.FLAG.getNormal());
-			if (isHalo()) canvas.getHalo().add(awtShape, colorProfiles.getDiagramSheet().getProperties().getHalo(), StrokeStyle.HALO.getNormal());
+			if (isFlag(data)) canvas.getFlags().add(awtShape, colorProfiles.getDiagramSheet().getProperties().getFlag(), StrokeStyle.FLAG.getNormal());
+			if (isHalo(data)) canvas.getHalo().add(awtShape, colorProfiles.getDiagramSheet().getProperties().getHalo(), StrokeStyle.HALO.getNormal());
 			if (shape.getS() != null && !shape.getS().isEmpty()) {
 				final NodeProperties limits = NodePropertiesFactory.get(
 						shape.getA().getX(), shape.getA().getY(),
@@ -68,6 +69,22 @@ public class RenderableProtein extends RenderableNode {
 		});
 	}
 
+	/**
+	 * Attachment boxes are filled with the expression colour of column t
+	 */
+	private void attachmentShapes(DiagramCanvas canvas, ColorProfiles colorProfiles, DiagramData data, int t) {
+		if (getNode().getNodeAttachments() == null || getNode().getNodeAttachments().isEmpty())
+			return;
+		final Color fill = getFillColor(colorProfiles, data, t);
+		final Color border = getStrokeColor(colorProfiles, data);
+		final Stroke stroke = StrokeStyle.BORDER.getNormal();
+		final FillDrawLayer fillDrawLayer = isFadeOut()
+				? canvas.getFadeOutAttachments()
+				: canvas.getAttachments();
+		getNode().getNodeAttachments().forEach(nodeAttachment ->
+				fillDrawLayer.add(ShapeFactory.getShape(nodeAttachment.getShape()), fill, border, stroke));
+	}
+
 	private Color getFillColor(ColorProfiles colorProfiles, DiagramData index, int t) {
 		if (isFadeOut())
 			return getColorProfile(colorProfiles).getFadeOutFill();
@@ -78,17 +95,17 @@ public class RenderableProtein extends RenderableNode {
 		// enrichment
 		if (index.getAnalysis().getType() == AnalysisType.SPECIES_COMPARISON
 				|| index.getAnalysis().getType() == AnalysisType.OVERREPRESENTATION) {
-			if (getEnrichment() != null && getEnrichment() > 0)
+			if (getEnrichment(index) != null && getEnrichment(index) > 0)
 				return colorProfiles.getAnalysisSheet().getEnrichment().getGradient().getMax();
 			else
 				return getColorProfile(colorProfiles).getLighterFill();
 		}
 		// expression
-		if (getHitExpressions() == null
-				|| getHitExpressions().isEmpty()) {
+		if (getHitExpressions(index) == null
+				|| getHitExpressions(index).isEmpty()) {
 			return getColorProfile(colorProfiles).getLighterFill();
 		} else {
-			final double exp = getHitExpressions().get(0).getExp().get(t);
+			final double exp = getHitExpressions(index).get(0).getExp().get(t);
 			final double min = index.getAnalysis().getResult().getExpression().getMin();
 			final double max = index.getAnalysis().getResult().getExpression().getMax();
 			final double value = 1 - (exp - min) / (max - min);
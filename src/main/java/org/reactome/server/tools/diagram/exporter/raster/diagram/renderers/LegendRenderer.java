@@ -42,8 +42,9 @@ public class LegendRenderer {
 	private static final int LEGEND_TO_DIAGRAM_SPACE = 15;
 	private static final int LEGEND_WIDTH = 70;
 	private static final int LEGEND_HEIGHT = 350;
-	private static final DecimalFormat EXPRESSION_FORMAT = new DecimalFormat("#.##E0", DecimalFormatSymbols.getInstance(Locale.UK));
-	private static final DecimalFormat ENRICHMENT_FORMAT = new DecimalFormat("#.##", DecimalFormatSymbols.getInstance(Locale.UK));
+	// DecimalFormat is not thread safe
+	private static final ThreadLocal<DecimalFormat> EXPRESSION_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("#.##E0", DecimalFormatSymbols.getInstance(Locale.UK)));
+	private static final ThreadLocal<DecimalFormat> ENRICHMENT_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("#.##", DecimalFormatSymbols.getInstance(Locale.UK)));
 	/**
 	 * value to create ticks arrows
 	 */
@@ -222,17 +223,17 @@ public class LegendRenderer {
 			// ProcessNode
 			final RenderableProcessNode pathway = data.getIndex().getPathwaysById().get(id);
 			if (pathway != null) {
-				if (pathway.getEnrichment() != null
-						&& pathway.getEnrichment() > 0
-						&& pathway.getEnrichmentValue() != null) {
-					double value = pathway.getEnrichmentValue();
+				if (pathway.getEnrichment(data) != null
+						&& pathway.getEnrichment(data) > 0
+						&& pathway.getEnrichmentValue(data) != null) {
+					double value = pathway.getEnrichmentValue(data);
 					drawTick(value, StrokeStyle.SEGMENT.get(false), profiles.getDiagramSheet().getProperties().getSelection());
 				}
 			}
 			final RenderableNode node = data.getIndex().getNodesById().get(id);
 			if (node != null) {
 				// The rest of the world
-				final List<FoundEntity> expressions = node.getHitExpressions();
+				final List<FoundEntity> expressions = node.getHitExpressions(data);
 				if (expressions == null || expressions.isEmpty()) continue;
 				// Calculate which ticks to draw: (min, median, max) or (value)
 				Double nMax;
@@ -332,14 +333,14 @@ public class LegendRenderer {
 		if (data.getAnalysis().getType() == AnalysisType.EXPRESSION
 				|| data.getAnalysis().getType() == AnalysisType.GSA_STATISTICS
 				|| data.getAnalysis().getType() == AnalysisType.GSVA) {
-			topText = EXPRESSION_FORMAT.format(data.getAnalysis().getResult().getExpression().getMax());
-			bottomText = EXPRESSION_FORMAT.format(data.getAnalysis().getResult().getExpression().getMin());
+			topText = EXPRESSION_FORMAT.get().format(data.getAnalysis().getResult().getExpression().getMax());
+			bottomText = EXPRESSION_FORMAT.get().format(data.getAnalysis().getResult().getExpression().getMin());
 		} else if (	data.getAnalysis().getType() == AnalysisType.GSA_REGULATION){
 			topText = "Up-regulated";
 			bottomText = "Down-regulated";
 		} else {
-			topText = ENRICHMENT_FORMAT.format(0);
-			bottomText = ENRICHMENT_FORMAT.format(DiagramAnalysis.MIN_ENRICHMENT);
+			topText = ENRICHMENT_FORMAT.get().format(0);
+			bottomText = ENRICHMENT_FORMAT.get().format(DiagramAnalysis.MIN_ENRICHMENT);
 		}
 		canvas.getLegendText().add(topText, Color.BLACK, top, 0, 0, FontProperties.DEFAULT_FONT);
 		canvas.getLegendText().add(bottomText, Color.BLACK, bottom, 0, 0, FontProperties.DEFAULT_FONT);
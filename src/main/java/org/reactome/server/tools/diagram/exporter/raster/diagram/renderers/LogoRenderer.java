@@ -34,6 +34,12 @@ public class LogoRenderer {
     private static final int LEGEND_TO_DIAGRAM_SPACE = 15;
     private static final double COMPARTMENT_PADDING = 15;
 
+    /**
+     * Logos are read once and shared, so PDFs with several diagrams embed them only once. Do not modify.
+     */
+    private static final BufferedImage LOGO = readImage("images/reactome_logo_100pxW_50T.png");
+    private static final BufferedImage PHARMGKB_LOGO = readImage("images/PHARMGKB_logo.png");
+
     private LogoRenderer() {
     }
 
@@ -204,18 +210,14 @@ public class LogoRenderer {
     }
 
     private static BufferedImage getLogo() {
-        final String filename = "images/reactome_logo_100pxW_50T.png";
-        final InputStream resource = Resources.class.getResourceAsStream(filename);
-        try {
-            return ImageIO.read(resource);
-        } catch (IOException e) {
-            LoggerFactory.getLogger("diagram-exporter").error("Logo not found in resources");
-        }
-        return new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        return LOGO;
     }
 
     private static BufferedImage getPharmGKBLogo() {
-        final String filename = "images/PHARMGKB_logo.png";
+        return PHARMGKB_LOGO;
+    }
+
+    private static BufferedImage readImage(String filename) {
         final InputStream resource = Resources.class.getResourceAsStream(filename);
         try {
             return ImageIO.read(resource);
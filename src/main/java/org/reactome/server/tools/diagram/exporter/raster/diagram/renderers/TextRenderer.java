@@ -90,13 +90,16 @@ public class TextRenderer {
                 final Paint textColor = graphics.getPaint();
                 graphics.setPaint(ANALYSIS_SHADOW_COLOR);
                 graphics.drawString(line, left - SHADOW_OFFSET, base + SHADOW_OFFSET);
-                graphics.setClip(whiteArea);
+                // keep the clip of the caller, like the strip of a tiled image
+                final Shape clip = graphics.getClip();
+                graphics.clip(whiteArea);
                 graphics.setPaint(ANALYSIS_TEXT_COLOR);
                 graphics.drawString(line, left, base);
                 graphics.setPaint(textColor);
-                graphics.setClip(colorArea);
+                graphics.setClip(clip);
+                graphics.clip(colorArea);
                 graphics.drawString(line, left, base);
-                graphics.setClip(null);
+                graphics.setClip(clip);
             } else graphics.drawString(line, left, base);
         }
         graphics.setFont(old);
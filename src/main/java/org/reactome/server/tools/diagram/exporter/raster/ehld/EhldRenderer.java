@@ -1,12 +1,24 @@
 package org.reactome.server.tools.diagram.exporter.raster.ehld;
 
-import com.itextpdf.kernel.geom.PageSize;
-import com.itextpdf.kernel.pdf.*;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.layout.Document;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.DocumentLoader;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgent;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.bridge.ViewBox;
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.gvt.CanvasGraphicsNode;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.renderer.ConcreteImageRendererFactory;
+import org.apache.batik.gvt.renderer.ImageRenderer;
+import org.apache.batik.gvt.renderer.ImageRendererFactory;
 import org.apache.batik.transcoder.TranscoderException;
 import org.apache.batik.transcoder.TranscoderInput;
 import org.apache.batik.transcoder.TranscoderOutput;
-import org.apache.batik.transcoder.image.ImageTranscoder;
 import org.apache.fop.activity.ContainerUtil;
 import org.apache.fop.configuration.Configuration;
 import org.apache.fop.configuration.ConfigurationException;
@@ -20,14 +32,20 @@ import org.reactome.server.tools.diagram.exporter.raster.api.RasterArgs;
 import org.reactome.server.tools.diagram.exporter.raster.ehld.exception.EhldException;
 import org.reactome.server.tools.diagram.exporter.raster.ehld.exception.EhldRuntimeException;
 import org.reactome.server.tools.diagram.exporter.raster.gif.AnimatedGifEncoder;
+import org.reactome.server.tools.diagram.exporter.raster.gif.GifFramePipeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.svg.SVGDocument;
+import org.w3c.dom.svg.SVGSVGElement;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Dimension2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -49,12 +67,14 @@ public class EhldRenderer implements RasterRenderer {
     private static final Set<String> NO_TRANSPARENT_FORMATS = new HashSet<>(Arrays.asList("jpg", "jpeg", "gif"));
 
     private static final float MARGIN = 15;
+    private final EhldTemplate template;
     private final SVGDocument document;
     private final RasterArgs args;
     private SvgAnalysis svgAnalysis;
     private AnalysisStoredResult result;
+    private boolean masksDisabled = false;
 
-    private static Configuration configuration;
+    private static volatile Configuration configuration;
 
     static {
         File file = Path.of("src/main/resources/fonts").toFile();
@@ -115,14 +135,15 @@ public class EhldRenderer implements RasterRenderer {
 
     public EhldRenderer(RasterArgs args, String ehldPath, AnalysisStoredResult result) throws EhldException {
         this.result = result;
-        this.document = ResourcesFactory.getEhld(ehldPath, args.getStId());
+        this.template = ResourcesFactory.getEhldTemplate(ehldPath, args.getStId());
+        this.document = template.copy();
         this.args = args;
         layout();
     }
 
     private void layout() {
         SvgDecoratorRenderer.selectAndFlag(document, args);
-        svgAnalysis = new SvgAnalysis(document, args, result);
+        svgAnalysis = new SvgAnalysis(document, template, args, result);
         svgAnalysis.analysis();
         updateDocumentDimensions();
     }
@@ -139,10 +160,18 @@ public class EhldRenderer implements RasterRenderer {
     @Override
     public BufferedImage render() {
         disableMasks();
-        return rasterize();
+        // TODO: 18/05/18 replace with the svg-renderer project when mature
+        final RenderSession session = new RenderSession(document, args);
+        try {
+            return session.render();
+        } finally {
+            session.dispose();
+        }
     }
 
     private void disableMasks() {
+        if (masksDisabled) return;
+        masksDisabled = true;
         // Remove each mask from its parent
         final NodeList masks = document.getElementsByTagNameNS(SVG_NAMESPACE_URI, SVG_MASK_TAG);
         final List<Element> maskNodes = IntStream.range(0, masks.getLength())
@@ -202,21 +231,6 @@ public class EhldRenderer implements RasterRenderer {
         document.getRootElement().setAttribute(SVG_HEIGHT_ATTRIBUTE, String.format(Locale.UK, "%.3f", height * args.getFactor()));
     }
 
-    /**
-     * Generates a raster from document.
-     */
-    private BufferedImage rasterize() {
-        // TODO: 18/05/18 replace with the svg-renderer project when mature
-        try {
-            final TranscoderInput input = new TranscoderInput(document);
-            final BufferedImageTranscoder transcoder = new BufferedImageTranscoder(args);
-            transcoder.transcode(input, null);
-            return transcoder.getImage();
-        } catch (TranscoderException e) {
-            throw new EhldRuntimeException(e.getMessage());
-        }
-    }
-
     @Override
     public void renderToAnimatedGif(OutputStream os) {
         if (svgAnalysis.getAnalysisType() != AnalysisType.EXPRESSION
@@ -229,13 +243,22 @@ public class EhldRenderer implements RasterRenderer {
         final AnimatedGifEncoder encoder = new AnimatedGifEncoder();
         encoder.setDelay(1000);
         encoder.setRepeat(0);
+        encoder.setOptimize(true);
         encoder.start(os);
-        for (int expressionColumn = 0; expressionColumn < svgAnalysis.getExpressionSummary().getColumnNames().size(); expressionColumn++) {
-            svgAnalysis.setColumn(expressionColumn);
-            final BufferedImage image = rasterize();
-            encoder.addFrame(image);
+        // frames are rasterized here, as they share the document, and encoded in parallel.
+        // The GVT tree is built once, and every column only updates the nodes it changes
+        final RenderSession session = new RenderSession(document, args);
+        try {
+            final GifFramePipeline pipeline = new GifFramePipeline(encoder);
+            for (int expressionColumn = 0; expressionColumn < svgAnalysis.getExpressionSummary().getColumnNames().size(); expressionColumn++) {
+                svgAnalysis.setColumn(expressionColumn);
+                final BufferedImage image = session.render();
+                pipeline.addFrame(image);
+            }
+            pipeline.finish();
+        } finally {
+            session.dispose();
         }
-        encoder.finish();
     }
 
     @Override
@@ -247,53 +270,105 @@ public class EhldRenderer implements RasterRenderer {
     @Override
     public Document renderToPdf() throws IOException {
         final ByteArrayOutputStream os = new ByteArrayOutputStream();
-        PdfWriter writer = new PdfWriter(os, new WriterProperties().setFullCompressionMode(true).useSmartMode());
-        Document document = new Document(new PdfDocument(writer));
-
-        PageSize pageSize = new PageSize(
-                Float.parseFloat(this.document.getRootElement().getAttribute("width")),
-                Float.parseFloat(this.document.getRootElement().getAttribute("height"))
-        );
-        final PdfPage page = document.getPdfDocument().addNewPage(pageSize);
-        document.setMargins(0, 0, 0, 0);
+        renderToPdf(os);
+        return new Document(new PdfDocument(new PdfReader(new ByteArrayInputStream(os.toByteArray()))));
+    }
 
-        try {
-            TranscoderInput input = new TranscoderInput(this.document);
-            TranscoderOutput output = new TranscoderOutput(os);
-            PDFTranscoder pdfTranscoder = new PDFTranscoder();
-            ContainerUtil.configure(pdfTranscoder, configuration);
-            pdfTranscoder.transcode(input, output);
+    /**
+     * Transcodes the EHLD straight into os. The transcoder sets the page size
+     * from the width and height of the document.
+     */
+    @Override
+    public void renderToPdf(OutputStream os) throws IOException {
+        final PDFTranscoder transcoder = new PDFTranscoder();
+        final Configuration fonts = configuration;
+        if (fonts != null) ContainerUtil.configure(transcoder, fonts);
+        try (OutputStream out = os) {
+            transcoder.transcode(new TranscoderInput(document), new TranscoderOutput(out));
         } catch (TranscoderException e) {
-            throw new RuntimeException(e);
+            throw new EhldRuntimeException(e.getMessage(), e);
         }
-
-        try {
-            return new Document(new PdfDocument(new PdfReader(new ByteArrayInputStream(os.toByteArray()))));
-        } catch (Exception e) { // Avoid PDF cross reference mismatch problem
-        }
-        return document;
     }
 
     /**
-     * There is no a standard BufferedImageTranscoder, although all Transcorders
-     * use BufferedImages as the raster. This class exposes that BufferedImage,
-     * so there is no need to store them in a File.
+     * Rasterizes the document as the Batik ImageTranscoder does, but builds
+     * the GVT tree only once. The bridge context is dynamic, so the changes
+     * made to the document afterwards, like the colors of a new expression
+     * column, only update the affected graphics nodes before the next raster.
+     * The context listens to the document until the session is disposed, so
+     * only one session is alive at a time, and none while transcoding to PDF.
      */
-    private static class BufferedImageTranscoder extends ImageTranscoder {
-
-        private BufferedImage image;
-        private String format;
-        private Color background;
-
-        BufferedImageTranscoder(RasterArgs args) {
+    private static class RenderSession {
+
+        private static final ImageRendererFactory RENDERER_FACTORY = new ConcreteImageRendererFactory();
+
+        private final BridgeContext context;
+        private final GraphicsNode root;
+        private final AffineTransform transform;
+        private final Shape area;
+        private final int width;
+        private final int height;
+        private final String format;
+        private final Color background;
+
+        RenderSession(SVGDocument document, RasterArgs args) {
+            final UserAgent userAgent = new UserAgentAdapter();
+            context = new BridgeContext(userAgent, new DocumentLoader(userAgent));
+            context.setDynamicState(BridgeContext.DYNAMIC);
+            root = new GVTBuilder().build(context, document);
+            final Dimension2D size = context.getDocumentSize();
+            final float docWidth = (float) size.getWidth();
+            final float docHeight = (float) size.getHeight();
+            width = (int) (docWidth + 0.5);
+            height = (int) (docHeight + 0.5);
+            // the root svg always has a viewBox (see updateDocumentDimensions)
+            final SVGSVGElement svg = document.getRootElement();
+            final AffineTransform viewTransform = ViewBox.getPreserveAspectRatioTransform(svg,
+                    svg.getAttributeNS(null, SVG_VIEW_BOX_ATTRIBUTE),
+                    svg.getAttributeNS(null, SVG_PRESERVE_ASPECT_RATIO_ATTRIBUTE),
+                    docWidth, docHeight, context);
+            final CanvasGraphicsNode canvas = getCanvasGraphicsNode(root);
+            if (canvas != null) {
+                canvas.setViewingTransform(viewTransform);
+                transform = new AffineTransform();
+            } else transform = viewTransform;
+            try {
+                area = transform.createInverse().createTransformedShape(new Rectangle2D.Float(0, 0, docWidth, docHeight));
+            } catch (NoninvertibleTransformException e) {
+                throw new EhldRuntimeException(e.getMessage(), e);
+            }
             this.background = args.getBackground() == null
                     ? Color.WHITE
                     : args.getBackground();
             this.format = args.getFormat();
         }
 
-        @Override
-        public BufferedImage createImage(int w, int h) {
+        private static CanvasGraphicsNode getCanvasGraphicsNode(GraphicsNode node) {
+            if (!(node instanceof CompositeGraphicsNode)) return null;
+            final List<?> children = ((CompositeGraphicsNode) node).getChildren();
+            if (children.isEmpty() || !(children.get(0) instanceof CanvasGraphicsNode)) return null;
+            return (CanvasGraphicsNode) children.get(0);
+        }
+
+        BufferedImage render() {
+            // a new renderer per raster, so nothing is cached from the previous tree state
+            final ImageRenderer renderer = RENDERER_FACTORY.createStaticImageRenderer();
+            try {
+                renderer.updateOffScreen(width, height);
+                renderer.setTransform(transform);
+                renderer.setTree(root);
+                renderer.repaint(area);
+                final BufferedImage image = createImage(width, height);
+                final Graphics2D graphics = GraphicsUtil.createGraphics(image);
+                graphics.drawRenderedImage(renderer.getOffScreen(), new AffineTransform());
+                graphics.dispose();
+                return image;
+            } finally {
+                renderer.dispose();
+            }
+        }
+
+        private BufferedImage createImage(int w, int h) {
             BufferedImage image;
             Graphics2D graphics;
             if (TRANSPARENT_FORMATS.contains(format)) {
@@ -306,20 +381,15 @@ public class EhldRenderer implements RasterRenderer {
                 graphics.clearRect(0, 0, image.getWidth(), image.getHeight());
             } else
                 throw new IllegalArgumentException("Unsupported file extension " + format);
-
-            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_GASP);
-
+            graphics.dispose();
             return image;
         }
 
-        @Override
-        public void writeImage(BufferedImage image, TranscoderOutput output) {
-            this.image = image;
-        }
-
-        public BufferedImage getImage() {
-            return image;
+        /**
+         * Releases the bridge context and detaches it from the document.
+         */
+        void dispose() {
+            context.dispose();
         }
     }
 }
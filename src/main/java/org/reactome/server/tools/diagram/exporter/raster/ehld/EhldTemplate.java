@@ -0,0 +1,70 @@
+package org.reactome.server.tools.diagram.exporter.raster.ehld;
+
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.gvt.GraphicsNode;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.svg.SVGDocument;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apache.batik.util.SVGConstants.SVG_ID_ATTRIBUTE;
+
+/**
+ * A parsed EHLD shared by every request on the same pathway. Requests must
+ * never modify the template, but a {@link #copy()} of it. The geometry that
+ * the analysis needs is measured once per template.
+ */
+public class EhldTemplate {
+
+	private final SVGDocument document;
+	private Map<String, Rectangle2D> analysisInfoBounds;
+
+	public EhldTemplate(SVGDocument document) {
+		this.document = document;
+	}
+
+	/**
+	 * @return a deep copy of the EHLD that can be freely modified
+	 */
+	public SVGDocument copy() {
+		// Batik documents are not safe to be read by several threads at once
+		synchronized (document) {
+			return (SVGDocument) document.cloneNode(true);
+		}
+	}
+
+	/**
+	 * Sensitive bounds of the ANALINFO groups, by id, computed the first time
+	 * they are requested. Analysis info texts are centered in these boxes.
+	 */
+	synchronized Map<String, Rectangle2D> getAnalysisInfoBounds() {
+		if (analysisInfoBounds == null) analysisInfoBounds = measureAnalysisInfo();
+		return analysisInfoBounds;
+	}
+
+	private Map<String, Rectangle2D> measureAnalysisInfo() {
+		// building the GVT breaks the document, so a copy is measured
+		final SVGDocument copy = copy();
+		final GVTBuilder builder = new GVTBuilder();
+		final BridgeContext context = new BridgeContext(new UserAgentAdapter());
+		builder.build(context, copy);
+		final Map<String, Rectangle2D> bounds = new HashMap<>();
+		final NodeList elements = copy.getElementsByTagNameNS("*", "*");
+		for (int i = 0; i < elements.getLength(); i++) {
+			final Element element = (Element) elements.item(i);
+			final String id = element.getAttribute(SVG_ID_ATTRIBUTE);
+			if (!id.startsWith(SvgAnalysis.ANALINFO)) continue;
+			final GraphicsNode box = builder.build(context, element);
+			if (box != null && box.getSensitiveBounds() != null)
+				bounds.put(id, box.getSensitiveBounds());
+		}
+		context.dispose();
+		return Collections.unmodifiableMap(bounds);
+	}
+}
@@ -1,9 +1,5 @@
 package org.reactome.server.tools.diagram.exporter.raster.ehld;
 
-import org.apache.batik.bridge.BridgeContext;
-import org.apache.batik.bridge.GVTBuilder;
-import org.apache.batik.bridge.UserAgentAdapter;
-import org.apache.batik.gvt.GraphicsNode;
 import org.reactome.server.analysis.core.model.AnalysisType;
 import org.reactome.server.analysis.core.result.AnalysisStoredResult;
 import org.reactome.server.analysis.core.result.model.*;
@@ -11,7 +7,6 @@ import org.reactome.server.tools.diagram.exporter.raster.api.RasterArgs;
 import org.reactome.server.tools.diagram.exporter.raster.profiles.ColorFactory;
 import org.reactome.server.tools.diagram.exporter.raster.profiles.GradientSheet;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -45,27 +40,19 @@ public class SvgAnalysis {
 	private static final String OVERLAY_CLONE_ = "OVERLAYCLONE-";
 	private static final String CLIPPING_PATH = "CLIPPINGPATH-";
 	private static final String OVERLAY_ = "OVERLAY-";
-	private static final String ANALINFO = "ANALINFO";
+	static final String ANALINFO = "ANALINFO";
 	private static final String ANALYSIS_INFO_CLASS = "ST-ANALYSIS-INFO";
 	private static final double MIN_OVERLAY_CLIP = 0.05;
 	private static final String HIT_BASIS_STROKE_COLOUR = "#000000";
 	private static final String HIT_BASIS_STROKE_WIDTH = "0.5";
-	private static final DecimalFormat NUMBER_FORMAT = new DecimalFormat("#.##E0", DecimalFormatSymbols.getInstance(Locale.UK));
+	// DecimalFormat is not thread safe
+	private static final ThreadLocal<DecimalFormat> NUMBER_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("#.##E0", DecimalFormatSymbols.getInstance(Locale.UK)));
 	private static final Color DEFAULT_OVERLAY_COLOR = new Color(194, 194, 194);
 	private static final double OVERLAY_OPACITY = 0.9;
 	private static final String BOTTOM_TEXT = "bottom-text";
-	private final GVTBuilder builder = new GVTBuilder();
-	private final BridgeContext context = new BridgeContext(new UserAgentAdapter());
 	private final SVGDocument document;
+	private final EhldTemplate template;
 	private final RasterArgs args;
-	/*
-	 * If you are asking why there is a cloned Document here, the short answer
-	 * is: text centering. The long answer is that we are using a builder to
-	 * calculate centers, but the builder, somehow is breaking the original
-	 * document. So we have created a copy of the document just to calculate the
-	 * centers of the ANALINFO boxes.
-	 */
-	private Document cloned;
 	private AnalysisStoredResult result;
 	private Map<String, EntityStatistics> entityStats;
 	private AnalysisType analysisType;
@@ -73,8 +60,13 @@ public class SvgAnalysis {
 	private String resource;
 	private AnalysisResult summary;
 
-	SvgAnalysis(SVGDocument document, RasterArgs args, AnalysisStoredResult result) {
+	/**
+	 * @param document a copy of template, to be modified
+	 * @param template where the geometry of the analysis boxes is taken from
+	 */
+	SvgAnalysis(SVGDocument document, EhldTemplate template, RasterArgs args, AnalysisStoredResult result) {
 		this.document = document;
+		this.template = template;
 		this.args = args;
 		this.result = result;
 		collectAnalysisResult();
@@ -137,12 +129,6 @@ public class SvgAnalysis {
 		final GradientSheet gradient = args.getProfiles().getAnalysisSheet().getEnrichment().getGradient();
 		SvgLegendRenderer.legend(document, gradient, 0, MAX_P_VALUE, AnalysisType.OVERREPRESENTATION);
 
-		// Calculate document dimensions
-		// Must be done to get children dimensions
-		// We use a clone because this method modifies the document
-		cloned = (Document) document.cloneNode(true);
-		builder.build(context, cloned);
-
 		pathways.forEach(s -> {
 			final EntityStatistics stats = entityStats.getOrDefault(s, null);
 			overlayEnrichment(s, stats);
@@ -158,11 +144,6 @@ public class SvgAnalysis {
 		SvgLegendRenderer.legend(document, gradient, summary.getExpression().getMax(), summary.getExpression().getMin(), AnalysisType.EXPRESSION);
 		addBottomTextGroup();
 
-		// Analysis info text is centered to ANALINFO group. To get the
-		// center of each ANALINFO group we must build the whole document.
-		cloned = (Document) document.cloneNode(true);
-		builder.build(context, cloned);
-
 		pathways.forEach(stId -> {
 			final EntityStatistics stats = entityStats.getOrDefault(stId, null);
 			overlayExpression(stId, stats, summary.getExpression());
@@ -180,11 +161,6 @@ public class SvgAnalysis {
 
 		addBottomTextGroup();
 
-		// Analysis info text is centered to ANALINFO group. To get the
-		// center of each ANALINFO group we must build the whole document.
-		cloned = (Document) document.cloneNode(true);
-		builder.build(context, cloned);
-
 		pathways.forEach(stId -> {
 			final EntityStatistics stats = entityStats.getOrDefault(stId, null);
 			overlayGSA(stId, stats, summary.getExpression());
@@ -406,17 +382,17 @@ public class SvgAnalysis {
 		final Integer found = entities.getFound();
 		final Integer total = entities.getTotal();
 		String msg = String.format("Hit: %d/%d - FDR: %s", found, total,
-				NUMBER_FORMAT.format(entities.getFdr()));
+				NUMBER_FORMAT.get().format(entities.getFdr()));
 		text.setTextContent(msg);
 
-		// Center text
-		final Element clonedElement = cloned.getElementById(element.getAttribute(SVG_ID_ATTRIBUTE));
-		final GraphicsNode box = builder.build(context, clonedElement);
+		// Center text, the analysis info box is measured once per EHLD
+		final Rectangle2D box = template.getAnalysisInfoBounds().get(element.getAttribute(SVG_ID_ATTRIBUTE));
+		if (box == null) return;
 
-		double centerX = box.getSensitiveBounds().getCenterX();
+		double centerX = box.getCenterX();
 		// Vertical centering must be done manually, since BATIK does not
 		// support aligment-baseline either dominant-baseline
-		double centerY = box.getSensitiveBounds().getCenterY() + TEXT_V_ALIGN;
+		double centerY = box.getCenterY() + TEXT_V_ALIGN;
 
 		text.removeAttribute(SVG_TRANSFORM_ATTRIBUTE);
 		text.setAttribute(SVG_TEXT_ANCHOR_ATTRIBUTE, SVG_MIDDLE_VALUE);
@@ -23,8 +23,9 @@ import static org.apache.batik.util.SVGConstants.*;
  */
 class SvgLegendRenderer {
 
-	private static final DecimalFormat EXPRESSION_FORMAT = new DecimalFormat("#.##E0", DecimalFormatSymbols.getInstance(Locale.UK));
-	private static final DecimalFormat ENRICHMENT_FORMAT = new DecimalFormat("#.##", DecimalFormatSymbols.getInstance(Locale.UK));
+	// DecimalFormat is not thread safe
+	private static final ThreadLocal<DecimalFormat> EXPRESSION_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("#.##E0", DecimalFormatSymbols.getInstance(Locale.UK)));
+	private static final ThreadLocal<DecimalFormat> ENRICHMENT_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("#.##", DecimalFormatSymbols.getInstance(Locale.UK)));
 
 	private static final String GRADIENT_BOX = "gradient-box";
 	private static final String POLYGON_BOX = "polygon-box";
@@ -116,7 +117,7 @@ class SvgLegendRenderer {
 		final DecimalFormat formatter = (analysisType == AnalysisType.EXPRESSION
 				|| analysisType == AnalysisType.GSA_REGULATION
 				|| analysisType == AnalysisType.GSA_STATISTICS
-				|| analysisType == AnalysisType.GSVA) ? EXPRESSION_FORMAT : ENRICHMENT_FORMAT;
+				|| analysisType == AnalysisType.GSVA) ? EXPRESSION_FORMAT.get() : ENRICHMENT_FORMAT.get();
 
 		final String topLabel = (analysisType == AnalysisType.GSA_REGULATION
 				|| analysisType == AnalysisType.GSA_STATISTICS
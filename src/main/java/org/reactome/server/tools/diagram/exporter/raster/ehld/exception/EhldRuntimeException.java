@@ -4,4 +4,8 @@ public class EhldRuntimeException extends RuntimeException {
 	public EhldRuntimeException(String message) {
 		super(message);
 	}
+
+	public EhldRuntimeException(String message, Throwable cause) {
+		super(message, cause);
+	}
 }
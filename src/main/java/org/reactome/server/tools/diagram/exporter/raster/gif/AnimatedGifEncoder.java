@@ -3,10 +3,8 @@ package org.reactome.server.tools.diagram.exporter.raster.gif;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.io.*;
+import java.util.Arrays;
 
 /**
  * Class AnimatedGifEncoder - Encodes a GIF file consisting of one or more
@@ -22,6 +20,15 @@ import java.io.OutputStream;
  *     e.finish();
  * </pre>
  * <p>
+ * Quantization and LZW compression of a frame are done by {@link
+ * #encodeFrame(BufferedImage)}, which does not modify the state of the
+ * encoder, so frames can be encoded concurrently and then written in order
+ * with {@link #addFrame(Frame)}. See {@link GifFramePipeline}.
+ * <p>
+ * With {@link #setOptimize(boolean)}, frames after the first one only contain
+ * the rectangle that changed from the previous frame, and reuse the global
+ * color table when possible.
+ * <p>
  * No copyright asserted on the source code of this class. May be used for any
  * purpose, however, refer to the Unisys LZW patent for restrictions on use of
  * the associated LZWEncoder class. Please forward any corrections to
@@ -40,29 +47,15 @@ public class AnimatedGifEncoder {
 
 	protected Color transparent = null; // transparent color if given
 
-	protected int transIndex; // transparent index in color table
-
 	protected int repeat = -1; // no repeat
 
 	protected int delay = 0; // frame delay (hundredths)
 
 	protected boolean started = false; // ready to output frames
 
-	protected OutputStream out;
-
-	protected BufferedImage image; // current frame
-
-	protected byte[] pixels; // BGR byte array from frame
-
-	protected byte[] indexedPixels; // converted frame indexed to palette
+	protected BufferedImage previous; // last image added with addFrame(BufferedImage)
 
-	protected int colorDepth; // number of bit planes
-
-	protected byte[] colorTab; // RGB palette
-
-	protected boolean[] usedEntry = new boolean[256]; // active palette entries
-
-	protected int palSize = 7; // color table size (bits-1)
+	protected OutputStream out;
 
 	protected int dispose = -1; // disposal code (-1 = use default)
 
@@ -74,6 +67,12 @@ public class AnimatedGifEncoder {
 
 	protected int sample = 10; // default sample interval for quantizer
 
+	protected boolean optimize = false; // write only changed rectangles
+
+	protected volatile Frame globalFrame; // first frame, owner of the global color table
+
+	protected volatile ColorTable globalTable; // lookup for the global color table
+
 	/**
 	 * Sets the delay time between each frame, or changes it for subsequent
 	 * frames (applies to last frame added).
@@ -125,6 +124,29 @@ public class AnimatedGifEncoder {
 		transparent = c;
 	}
 
+	/**
+	 * Enables delta frames. Every frame after the first one is reduced to the
+	 * bounding rectangle of the pixels that changed from the previous frame,
+	 * and is drawn over it (disposal method 1). When all the colors of that
+	 * rectangle are in the global color table, no local color table is
+	 * written. Ignored if a transparent color is set, as transparent pixels
+	 * would show the previous frame. Must be invoked before the first image
+	 * is added.
+	 *
+	 * @param optimize true to write delta frames
+	 */
+	public void setOptimize(boolean optimize) {
+		this.optimize = optimize;
+	}
+
+	/**
+	 * @return true if frames after the first one are encoded as the
+	 * difference with the previous one.
+	 */
+	public boolean isOptimize() {
+		return optimize && transparent == null;
+	}
+
 	/**
 	 * Adds next GIF frame. The frame is not written immediately, but is
 	 * actually deferred until the next frame is received so that timing data
@@ -140,29 +162,48 @@ public class AnimatedGifEncoder {
 		if ((im == null) || !started) {
 			return false;
 		}
+		if (!sizeSet) {
+			// use first frame's size
+			setSize(im.getWidth(), im.getHeight());
+		}
+		final boolean ok = addFrame(encodeFrame(previous, im));
+		previous = im;
+		return ok;
+	}
+
+	/**
+	 * Writes a frame previously encoded with <code>encodeFrame</code>.
+	 *
+	 * @param frame encoded frame
+	 *
+	 * @return true if successful.
+	 */
+	public boolean addFrame(Frame frame) {
+		if ((frame == null) || !started) {
+			return false;
+		}
+		if (!sizeSet) {
+			// use first frame's size
+			setSize(frame.width, frame.height);
+		}
 		boolean ok = true;
 		try {
-			if (!sizeSet) {
-				// use first frame's size
-				setSize(im.getWidth(), im.getHeight());
-			}
-			image = im;
-			getImagePixels(); // convert to correct format if necessary
-			analyzePixels(); // build color table & map pixels
 			if (firstFrame) {
-				writeLSD(); // logical screen descriptior
-				writePalette(); // global color table
+				writeLSD(frame); // logical screen descriptior
+				writePalette(frame); // global color table
 				if (repeat >= 0) {
 					// use NS app extension to indicate reps
 					writeNetscapeExt();
 				}
+				globalFrame = frame;
+				if (isOptimize()) globalTable = ColorTable.of(frame.colorTab);
 			}
-			writeGraphicCtrlExt(); // write graphic control extension
-			writeImageDesc(); // image descriptor
-			if (!firstFrame) {
-				writePalette(); // local color table
+			writeGraphicCtrlExt(frame); // write graphic control extension
+			writeImageDesc(frame); // image descriptor
+			if (!firstFrame && !frame.global) {
+				writePalette(frame); // local color table
 			}
-			writePixels(); // encode and write pixel data
+			out.write(frame.data); // encoded pixel data
 			firstFrame = false;
 		} catch (IOException e) {
 			ok = false;
@@ -171,6 +212,61 @@ public class AnimatedGifEncoder {
 		return ok;
 	}
 
+	/**
+	 * Quantizes and compresses an image, without writing it. The encoder is
+	 * not modified, so this method can be called from several threads at the
+	 * same time. If <code>setSize</code> was not invoked, the size of the
+	 * image is used.
+	 *
+	 * @param im BufferedImage containing frame to encode.
+	 *
+	 * @return the encoded frame, ready for <code>addFrame</code>
+	 */
+	public Frame encodeFrame(BufferedImage im) {
+		return encodeFrame(null, im);
+	}
+
+	/**
+	 * Same as <code>encodeFrame(im)</code>, but if optimize is set and the
+	 * first frame has already been written, only the rectangle that differs
+	 * from previous is encoded.
+	 *
+	 * @param previous the frame before im, or null if im is the first one
+	 * @param im       BufferedImage containing frame to encode.
+	 *
+	 * @return the encoded frame, ready for <code>addFrame</code>
+	 */
+	public Frame encodeFrame(BufferedImage previous, BufferedImage im) {
+		final int w = sizeSet ? width : im.getWidth();
+		final int h = sizeSet ? height : im.getHeight();
+		byte[] pixels = getImagePixels(im, w, h); // convert to correct format if necessary
+		final Frame frame;
+		if (previous != null && isOptimize() && globalTable != null) {
+			final Rectangle delta = difference(getImagePixels(previous, w, h), pixels, w, h);
+			pixels = crop(pixels, w, delta);
+			frame = mapToGlobal(pixels);
+			frame.x = delta.x;
+			frame.y = delta.y;
+			frame.width = delta.width;
+			frame.height = delta.height;
+		} else {
+			frame = analyzePixels(pixels); // build color table & map pixels
+			frame.width = w;
+			frame.height = h;
+		}
+		if (isOptimize()) frame.dispose = 1; // leave in place, next frame only draws changes
+		try {
+			final ByteArrayOutputStream data = new ByteArrayOutputStream(w * h / 4);
+			new LZWEncoder(frame.width, frame.height, frame.indexedPixels, frame.colorDepth).encode(data);
+			frame.data = data.toByteArray();
+		} catch (IOException e) {
+			// ByteArrayOutputStream does not throw IOException
+			throw new UncheckedIOException(e);
+		}
+		frame.indexedPixels = null;
+		return frame;
+	}
+
 	/**
 	 * Flushes any pending data and closes output file. If writing to an
 	 * OutputStream, the stream is not closed.
@@ -191,12 +287,10 @@ public class AnimatedGifEncoder {
 		}
 
 		// reset for subsequent use
-		transIndex = 0;
 		out = null;
-		image = null;
-		pixels = null;
-		indexedPixels = null;
-		colorTab = null;
+		previous = null;
+		globalFrame = null;
+		globalTable = null;
 		closeStream = false;
 		firstFrame = true;
 
@@ -293,42 +387,164 @@ public class AnimatedGifEncoder {
 	}
 
 	/**
-	 * Analyzes image colors and creates color map.
+	 * Bounding rectangle of the pixels that are different in a and b. If
+	 * there are no differences, a single pixel is returned, as a frame cannot
+	 * be empty.
 	 */
-	protected void analyzePixels() {
+	protected Rectangle difference(byte[] a, byte[] b, int width, int height) {
+		final int row = 3 * width;
+		int top = 0;
+		while (top < height && Arrays.equals(a, top * row, (top + 1) * row, b, top * row, (top + 1) * row))
+			top++;
+		if (top == height) return new Rectangle(0, 0, 1, 1);
+		int bottom = height - 1;
+		while (Arrays.equals(a, bottom * row, (bottom + 1) * row, b, bottom * row, (bottom + 1) * row))
+			bottom--;
+		int left = width;
+		int right = -1;
+		for (int y = top; y <= bottom; y++) {
+			final int offset = y * row;
+			for (int x = 0; x < left; x++) {
+				final int k = offset + 3 * x;
+				if (a[k] != b[k] || a[k + 1] != b[k + 1] || a[k + 2] != b[k + 2]) {
+					left = x;
+					break;
+				}
+			}
+			for (int x = width - 1; x > right; x--) {
+				final int k = offset + 3 * x;
+				if (a[k] != b[k] || a[k + 1] != b[k + 1] || a[k + 2] != b[k + 2]) {
+					right = x;
+					break;
+				}
+			}
+		}
+		return new Rectangle(left, top, right - left + 1, bottom - top + 1);
+	}
+
+	/**
+	 * Copies the pixels inside rectangle into a new BGR array
+	 */
+	protected byte[] crop(byte[] pixels, int width, Rectangle rectangle) {
+		final byte[] cropped = new byte[3 * rectangle.width * rectangle.height];
+		for (int y = 0; y < rectangle.height; y++)
+			System.arraycopy(pixels, 3 * ((rectangle.y + y) * width + rectangle.x),
+					cropped, 3 * y * rectangle.width, 3 * rectangle.width);
+		return cropped;
+	}
+
+	/**
+	 * Indexes pixels with the global color table, or with a color table of
+	 * its own if any color is missing from the global one.
+	 */
+	protected Frame mapToGlobal(byte[] pixels) {
+		final int nPix = pixels.length / 3;
+		final byte[] indexedPixels = new byte[nPix];
+		for (int i = 0, k = 0; i < nPix; i++, k += 3) {
+			final int index = globalTable.indexOf(rgb(pixels, k));
+			if (index < 0) return analyzePixels(pixels);
+			indexedPixels[i] = (byte) index;
+		}
+		final Frame frame = new Frame();
+		frame.indexedPixels = indexedPixels;
+		frame.colorTab = globalFrame.colorTab;
+		frame.colorDepth = globalFrame.colorDepth;
+		frame.palSize = globalFrame.palSize;
+		frame.global = true;
+		return frame;
+	}
+
+	/**
+	 * Analyzes image colors and creates color map. When the image has 256
+	 * colors or less, the palette contains exactly those colors, otherwise it
+	 * is computed by NeuQuant.
+	 */
+	protected Frame analyzePixels(byte[] pixels) {
+		final Frame exact = exactPalette(pixels);
+		if (exact != null) return exact;
 		int len = pixels.length;
 		int nPix = len / 3;
-		indexedPixels = new byte[nPix];
+		final Frame frame = new Frame();
+		frame.indexedPixels = new byte[nPix];
 		NeuQuant nq = new NeuQuant(pixels, len, sample);
 		// initialize quantizer
-		colorTab = nq.process(); // create reduced palette
+		byte[] colorTab = nq.process(); // create reduced palette
+		boolean[] usedEntry = new boolean[256]; // active palette entries
 		// convert map from BGR to RGB
 		for (int i = 0; i < colorTab.length; i += 3) {
 			byte temp = colorTab[i];
 			colorTab[i] = colorTab[i + 2];
 			colorTab[i + 2] = temp;
-			usedEntry[i / 3] = false;
 		}
 		// map image pixels to new palette
 		int k = 0;
 		for (int i = 0; i < nPix; i++) {
 			int index = nq.map(pixels[k++] & 0xff, pixels[k++] & 0xff, pixels[k++] & 0xff);
 			usedEntry[index] = true;
-			indexedPixels[i] = (byte) index;
+			frame.indexedPixels[i] = (byte) index;
 		}
-		pixels = null;
-		colorDepth = 8;
-		palSize = 7;
+		frame.colorTab = colorTab;
+		frame.colorDepth = 8;
+		frame.palSize = 7;
 		// get closest match to transparent color if specified
 		if (transparent != null) {
-			transIndex = findClosest(transparent);
+			frame.transIndex = findClosest(colorTab, usedEntry, transparent);
+		}
+		return frame;
+	}
+
+	/**
+	 * Builds the palette with the colors of the image and maps every pixel in
+	 * a single pass. Colors are indexed in an open addressing hash table, as
+	 * a map of Integer would be much slower for the millions of pixels of a
+	 * big diagram.
+	 *
+	 * @return the frame, or null if there are more than 256 colors
+	 */
+	protected Frame exactPalette(byte[] pixels) {
+		final int nPix = pixels.length / 3;
+		final ColorTable table = new ColorTable();
+		final byte[] indexedPixels = new byte[nPix];
+		int last = -1; // consecutive pixels usually share the color
+		byte lastIndex = 0;
+		for (int i = 0, k = 0; i < nPix; i++, k += 3) {
+			final int rgb = rgb(pixels, k);
+			if (rgb != last) {
+				final int index = table.add(rgb);
+				if (index < 0) return null;
+				last = rgb;
+				lastIndex = (byte) index;
+			}
+			indexedPixels[i] = lastIndex;
+		}
+		final int colors = table.size();
+		final Frame frame = new Frame();
+		frame.indexedPixels = indexedPixels;
+		// smallest table that contains all the colors, LZW needs at least 2 bits
+		int depth = 2;
+		while ((1 << depth) < colors) depth++;
+		frame.colorDepth = depth;
+		frame.palSize = depth - 1;
+		frame.colorTab = table.getColorTab();
+		if (transparent != null) {
+			final boolean[] usedEntry = new boolean[256];
+			Arrays.fill(usedEntry, 0, colors, true);
+			frame.transIndex = findClosest(frame.colorTab, usedEntry, transparent);
 		}
+		return frame;
+	}
+
+	/**
+	 * RGB value of the BGR pixel at offset k
+	 */
+	private static int rgb(byte[] pixels, int k) {
+		return (pixels[k + 2] & 0xff) << 16 | (pixels[k + 1] & 0xff) << 8 | (pixels[k] & 0xff);
 	}
 
 	/**
 	 * Returns index of palette color closest to c
 	 */
-	protected int findClosest(Color c) {
+	protected int findClosest(byte[] colorTab, boolean[] usedEntry, Color c) {
 		if (colorTab == null)
 			return -1;
 		int r = c.getRed();
@@ -353,9 +569,9 @@ public class AnimatedGifEncoder {
 	}
 
 	/**
-	 * Extracts image pixels into byte array "pixels"
+	 * Extracts image pixels into a BGR byte array
 	 */
-	protected void getImagePixels() {
+	protected byte[] getImagePixels(BufferedImage image, int width, int height) {
 		int w = image.getWidth();
 		int h = image.getHeight();
 		int type = image.getType();
@@ -364,15 +580,16 @@ public class AnimatedGifEncoder {
 			BufferedImage temp = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
 			Graphics2D g = temp.createGraphics();
 			g.drawImage(image, 0, 0, null);
+			g.dispose();
 			image = temp;
 		}
-		pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
 	}
 
 	/**
 	 * Writes Graphic Control Extension
 	 */
-	protected void writeGraphicCtrlExt() throws IOException {
+	protected void writeGraphicCtrlExt(Frame frame) throws IOException {
 		out.write(0x21); // extension introducer
 		out.write(0xf9); // GCE label
 		out.write(4); // data block size
@@ -384,6 +601,9 @@ public class AnimatedGifEncoder {
 			transp = 1;
 			disp = 2; // force clear if using transparent color
 		}
+		if (frame.dispose >= 0) {
+			disp = frame.dispose;
+		}
 		if (dispose >= 0) {
 			disp = dispose & 7; // user override
 		}
@@ -396,21 +616,21 @@ public class AnimatedGifEncoder {
 				transp); // 8 transparency flag
 
 		writeShort(delay); // delay x 1/100 sec
-		out.write(transIndex); // transparent color index
+		out.write(frame.transIndex); // transparent color index
 		out.write(0); // block terminator
 	}
 
 	/**
 	 * Writes Image Descriptor
 	 */
-	protected void writeImageDesc() throws IOException {
+	protected void writeImageDesc(Frame frame) throws IOException {
 		out.write(0x2c); // image separator
-		writeShort(0); // image position x,y = 0,0
-		writeShort(0);
-		writeShort(width); // image size
-		writeShort(height);
+		writeShort(frame.x); // image position
+		writeShort(frame.y);
+		writeShort(frame.width); // image size
+		writeShort(frame.height);
 		// packed fields
-		if (firstFrame) {
+		if (firstFrame || frame.global) {
 			// no LCT - GCT is used for first (or only) frame
 			out.write(0);
 		} else {
@@ -419,14 +639,14 @@ public class AnimatedGifEncoder {
 					0 | // 2 interlace - 0=no
 					0 | // 3 sorted - 0=no
 					0 | // 4-5 reserved
-					palSize); // 6-8 size of color table
+					frame.palSize); // 6-8 size of color table
 		}
 	}
 
 	/**
 	 * Writes Logical Screen Descriptor
 	 */
-	protected void writeLSD() throws IOException {
+	protected void writeLSD(Frame frame) throws IOException {
 		// logical screen size
 		writeShort(width);
 		writeShort(height);
@@ -434,7 +654,7 @@ public class AnimatedGifEncoder {
 		out.write((0x80 | // 1 : global color table flag = 1 (gct used)
 				0x70 | // 2-4 : color resolution = 7
 				0x00 | // 5 : gct sort flag = 0
-				palSize)); // 6-8 : gct size
+				frame.palSize)); // 6-8 : gct size
 
 		out.write(0); // background color index
 		out.write(0); // pixel aspect ratio - assume 1:1
@@ -457,22 +677,14 @@ public class AnimatedGifEncoder {
 	/**
 	 * Writes color table
 	 */
-	protected void writePalette() throws IOException {
-		out.write(colorTab, 0, colorTab.length);
-		int n = (3 * 256) - colorTab.length;
+	protected void writePalette(Frame frame) throws IOException {
+		out.write(frame.colorTab, 0, frame.colorTab.length);
+		int n = (3 << (frame.palSize + 1)) - frame.colorTab.length;
 		for (int i = 0; i < n; i++) {
 			out.write(0);
 		}
 	}
 
-	/**
-	 * Encodes and writes pixel data
-	 */
-	protected void writePixels() throws IOException {
-		LZWEncoder encoder = new LZWEncoder(width, height, indexedPixels, colorDepth);
-		encoder.encode(out);
-	}
-
 	/**
 	 * Write 16-bit value to output stream, LSB first
 	 */
@@ -489,6 +701,37 @@ public class AnimatedGifEncoder {
 			out.write((byte) s.charAt(i));
 		}
 	}
-}
 
+	/**
+	 * A quantized and LZW compressed frame, created by <code>encodeFrame</code>.
+	 */
+	public static class Frame {
+
+		private int x;
+
+		private int y;
 
+		private int width;
+
+		private int height;
+
+		private boolean global; // uses the global color table
+
+		private byte[] indexedPixels; // frame indexed to palette, until compressed
+
+		private byte[] colorTab; // RGB palette
+
+		private int colorDepth; // number of bit planes
+
+		private int palSize; // color table size (bits-1)
+
+		private int transIndex; // transparent index in color table
+
+		private int dispose = -1; // disposal code (-1 = use default)
+
+		private byte[] data; // LZW compressed pixels
+
+		private Frame() {
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package org.reactome.server.tools.diagram.exporter.raster.gif;
+
+import java.util.Arrays;
+
+/**
+ * A palette of up to 256 colors, indexed by an open addressing hash table of
+ * 24 bit RGB values. Used to map pixels to an exact palette without boxing
+ * every pixel.
+ */
+class ColorTable {
+
+	private static final int BITS = 10; // 1024 slots for 256 colors
+	private static final int SIZE = 1 << BITS;
+	private static final int EMPTY = -1; // no 24 bit color can be -1
+
+	private final int[] keys = new int[SIZE];
+	private final byte[] values = new byte[SIZE];
+	private final byte[] colorTab = new byte[3 * 256];
+	private int colors = 0;
+
+	ColorTable() {
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Creates a table with the colors of an RGB palette, to look them up with
+	 * <code>indexOf</code>. Repeated colors keep their first index.
+	 */
+	static ColorTable of(byte[] colorTab) {
+		final ColorTable table = new ColorTable();
+		for (int i = 0; i + 2 < colorTab.length && table.colors < 256; i += 3) {
+			final int rgb = (colorTab[i] & 0xff) << 16 | (colorTab[i + 1] & 0xff) << 8 | (colorTab[i + 2] & 0xff);
+			final int slot = table.slot(rgb);
+			if (table.keys[slot] == EMPTY) table.put(slot, rgb, i / 3);
+		}
+		return table;
+	}
+
+	/**
+	 * @return the index of rgb, or -1 if it is not in the palette
+	 */
+	int indexOf(int rgb) {
+		final int slot = slot(rgb);
+		return keys[slot] == EMPTY ? -1 : values[slot] & 0xff;
+	}
+
+	/**
+	 * @return the index of rgb, adding it to the palette if needed, or -1 if
+	 * it is not in the palette and the palette is full
+	 */
+	int add(int rgb) {
+		final int slot = slot(rgb);
+		if (keys[slot] != EMPTY) return values[slot] & 0xff;
+		if (colors == 256) return -1;
+		final int index = colors;
+		put(slot, rgb, index);
+		colorTab[3 * index] = (byte) (rgb >> 16);
+		colorTab[3 * index + 1] = (byte) (rgb >> 8);
+		colorTab[3 * index + 2] = (byte) rgb;
+		return index;
+	}
+
+	/**
+	 * @return number of colors in the palette
+	 */
+	int size() {
+		return colors;
+	}
+
+	/**
+	 * @return the RGB palette, 3 bytes per color
+	 */
+	byte[] getColorTab() {
+		return Arrays.copyOf(colorTab, 3 * colors);
+	}
+
+	private void put(int slot, int rgb, int index) {
+		keys[slot] = rgb;
+		values[slot] = (byte) index;
+		colors++;
+	}
+
+	private int slot(int rgb) {
+		int slot = (rgb * 0x9E3779B1) >>> (32 - BITS);
+		while (keys[slot] != EMPTY && keys[slot] != rgb)
+			slot = (slot + 1) & (SIZE - 1);
+		return slot;
+	}
+}
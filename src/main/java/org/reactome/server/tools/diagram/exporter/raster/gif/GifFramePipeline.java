@@ -0,0 +1,103 @@
+package org.reactome.server.tools.diagram.exporter.raster.gif;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Encodes the frames of an {@link AnimatedGifEncoder} in parallel. Frames are
+ * quantized and compressed in an {@link Executor} as soon as they are added,
+ * and written to the encoder in the same order they were added. No more than
+ * <em>window</em> frames are kept in memory: when the window is full,
+ * {@link #addFrame(BufferedImage)} waits for the oldest frame and writes it.
+ * <pre>
+ *     AnimatedGifEncoder e = new AnimatedGifEncoder();
+ *     e.start(outputStream);
+ *     GifFramePipeline pipeline = new GifFramePipeline(e);
+ *     pipeline.addFrame(image1);
+ *     pipeline.addFrame(image2);
+ *     pipeline.finish();
+ * </pre>
+ * Images must not be modified after being added, as they are also compared
+ * with the next frame when the encoder is optimized.
+ */
+public class GifFramePipeline {
+
+	private final AnimatedGifEncoder encoder;
+	private final Executor executor;
+	private final int window;
+	private final Deque<CompletableFuture<AnimatedGifEncoder.Frame>> pending = new ArrayDeque<>();
+	private BufferedImage previous;
+
+	/**
+	 * Creates a pipeline that uses the common pool, with a window of one frame
+	 * per thread, plus one.
+	 *
+	 * @param encoder a started encoder
+	 */
+	public GifFramePipeline(AnimatedGifEncoder encoder) {
+		this(encoder, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism() + 1);
+	}
+
+	/**
+	 * @param encoder  a started encoder
+	 * @param executor where frames are encoded
+	 * @param window   max number of frames waiting to be written
+	 */
+	public GifFramePipeline(AnimatedGifEncoder encoder, Executor executor, int window) {
+		if (window < 1) throw new IllegalArgumentException("window must be positive: " + window);
+		this.encoder = encoder;
+		this.executor = executor;
+		this.window = window;
+	}
+
+	/**
+	 * Starts encoding image. If the window is full, waits until the oldest
+	 * frame is encoded and writes it.
+	 *
+	 * @param image next frame
+	 */
+	public void addFrame(BufferedImage image) {
+		final BufferedImage previous = this.previous;
+		this.previous = image;
+		if (previous == null && encoder.isOptimize()) {
+			// delta frames need the global color table, so the first frame is
+			// written before encoding the rest
+			encoder.addFrame(encoder.encodeFrame(image));
+			return;
+		}
+		while (pending.size() >= window) writeNext();
+		pending.add(CompletableFuture.supplyAsync(() -> encoder.encodeFrame(previous, image), executor));
+	}
+
+	/**
+	 * Writes all the pending frames and finishes the encoder.
+	 */
+	public void finish() {
+		try {
+			while (!pending.isEmpty()) writeNext();
+		} finally {
+			pending.forEach(future -> future.cancel(false));
+			pending.clear();
+			previous = null;
+			encoder.finish();
+		}
+	}
+
+	private void writeNext() {
+		final AnimatedGifEncoder.Frame frame;
+		try {
+			frame = pending.removeFirst().join();
+		} catch (CompletionException e) {
+			pending.forEach(future -> future.cancel(false));
+			pending.clear();
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw e;
+		}
+		encoder.addFrame(frame);
+	}
+}
@@ -121,7 +121,8 @@ public class PdfGraphics2D extends Graphics2D {
 	private Composite composite;
 	// Added by Alexej Suchov
 	private Paint realPaint;
-	private DefaultFontMapper fontMapper = new DefaultFontMapper();
+	private final PdfGraphicsResources resources;
+	private final DefaultFontMapper fontMapper;
 
 //	private PdfGraphics2D(PdfCanvas canvas) {
 //		this.canvas = canvas;
@@ -129,17 +130,27 @@ public class PdfGraphics2D extends Graphics2D {
 //	}
 
 	public PdfGraphics2D(PdfCanvas canvas, final float x, final float y, final float width, final float height) {
-		this(canvas, x, y, width, height, false, 0);
+		this(canvas, x, y, width, height, false, 0, new PdfGraphicsResources());
 	}
 
 	public PdfGraphics2D(PdfCanvas canvas, final float x, final float y, final float width, final float height, final boolean onlyShapes) {
-		this(canvas, x, y, width, height, onlyShapes, 0);
+		this(canvas, x, y, width, height, onlyShapes, 0, new PdfGraphicsResources());
+	}
+
+	/**
+	 * @param resources fonts and images of the document of canvas, shared
+	 *                  with the graphics of the other pages
+	 */
+	public PdfGraphics2D(PdfCanvas canvas, final float x, final float y, final float width, final float height, final boolean onlyShapes, PdfGraphicsResources resources) {
+		this(canvas, x, y, width, height, onlyShapes, 0, resources);
 	}
 
 	/**
 	 * Constructor for PDFGraphics2D.
 	 */
-	private PdfGraphics2D(PdfCanvas canvas, final float x, final float y, float width, float height, boolean onlyShapes, float quality) {
+	private PdfGraphics2D(PdfCanvas canvas, final float x, final float y, float width, float height, boolean onlyShapes, float quality, PdfGraphicsResources resources) {
+		this.resources = resources;
+		this.fontMapper = resources.getFontMapper();
 		this.baseFont = fontMapper.awtToPdf(FontProperties.DEFAULT_FONT);
 		this.fillGState = new PdfExtGState[256];
 		this.strokeGState = new PdfExtGState[256];
@@ -1003,7 +1014,7 @@ public class PdfGraphics2D extends Graphics2D {
 	 */
 	@Override
 	public Graphics create() {
-		PdfGraphics2D g2 = new PdfGraphics2D(canvas, x, y, width, height, onlyShapes, jpegQuality);
+		PdfGraphics2D g2 = new PdfGraphics2D(canvas, x, y, width, height, onlyShapes, jpegQuality, resources);
 		g2.rhints.putAll(this.rhints);
 //		g2.onlyShapes = this.onlyShapes;
 		g2.transform = new AffineTransform(this.transform);
@@ -1538,11 +1549,16 @@ public class PdfGraphics2D extends Graphics2D {
 		}
 
 		try {
-			final ImageData image = ImageDataFactory.create(img, bgColor);
-			if (mask != null) {
-				ImageDataFactory.create(mask, null, true);
+			if (bgColor == null && mask == null) {
+				// the same image is embedded once per document
+				canvas.addXObjectWithTransformationMatrix(resources.getImage(img), (float) mx[0], (float) mx[1], (float) mx[2], (float) mx[3], (float) mx[4], (float) mx[5]);
+			} else {
+				final ImageData image = ImageDataFactory.create(img, bgColor);
+				if (mask != null) {
+					ImageDataFactory.create(mask, null, true);
+				}
+				canvas.addImageWithTransformationMatrix(image, (float) mx[0], (float) mx[1], (float) mx[2], (float) mx[3], (float) mx[4], (float) mx[5]);
 			}
-			canvas.addImageWithTransformationMatrix(image, (float) mx[0], (float) mx[1], (float) mx[2], (float) mx[3], (float) mx[4], (float) mx[5]);
 		} catch (Exception ex) {
 			throw new IllegalArgumentException(ex);
 		}
@@ -0,0 +1,37 @@
+package org.reactome.server.tools.diagram.exporter.raster.itext.awt;
+
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Fonts and images of a PdfDocument. Every {@link PdfGraphics2D} drawing on
+ * the pages of the same document should use the same resources, so fonts and
+ * images are embedded only once. Resources must not be shared between
+ * documents.
+ */
+public class PdfGraphicsResources {
+
+	private final DefaultFontMapper fontMapper = new DefaultFontMapper();
+	private final Map<Image, PdfImageXObject> images = new IdentityHashMap<>();
+
+	DefaultFontMapper getFontMapper() {
+		return fontMapper;
+	}
+
+	/**
+	 * @return the XObject of image, created the first time image is drawn
+	 */
+	synchronized PdfImageXObject getImage(Image image) throws IOException {
+		PdfImageXObject xObject = images.get(image);
+		if (xObject == null) {
+			xObject = new PdfImageXObject(ImageDataFactory.create(image, null));
+			images.put(image, xObject);
+		}
+		return xObject;
+	}
+}
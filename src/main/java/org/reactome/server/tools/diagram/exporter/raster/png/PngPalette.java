@@ -0,0 +1,225 @@
+package org.reactome.server.tools.diagram.exporter.raster.png;
+
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Palette of up to 256 ARGB colors for palette PNG images. Images with 256
+ * colors or less get an exact palette. Otherwise, colors are grouped in
+ * buckets by the 4 most significant bits of every channel, and the 256 most
+ * used buckets, with their average color, form the palette. Fully transparent
+ * pixels share one color. Translucent colors go first, so the tRNS chunk is as
+ * short as possible.
+ */
+public class PngPalette {
+
+	private static final int MAX_COLORS = 256;
+	private static final int BUCKETS = 1 << 16;
+	// open addressing, 4 slots per color
+	private static final int SLOTS = 4 * MAX_COLORS;
+
+	private final int[] colors;
+	private final boolean exact;
+	// exact palettes
+	private int[] keys;
+	private int[] indexes;
+	// quantized palettes, palette index of every bucket
+	private int[] bucketIndexes;
+
+	private PngPalette(int[] colors, boolean exact) {
+		this.colors = colors;
+		this.exact = exact;
+	}
+
+	/**
+	 * Reads every pixel of image and creates its palette.
+	 */
+	public static PngPalette of(RenderedImage image) {
+		final Builder builder = new Builder();
+		try {
+			PngWriter.readRows(image, builder::add);
+		} catch (IOException e) {
+			// rows are read from memory
+			throw new UncheckedIOException(e);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return the colors of the palette, as ARGB values. Do not modify
+	 */
+	public int[] getColors() {
+		return colors;
+	}
+
+	/**
+	 * @return true if every color of the image is in the palette
+	 */
+	public boolean isExact() {
+		return exact;
+	}
+
+	/**
+	 * @return true if any color of the palette is not opaque
+	 */
+	public boolean hasAlpha() {
+		return colors.length > 0 && colors[0] >>> 24 != 0xff;
+	}
+
+	/**
+	 * @param argb a color of the image
+	 *
+	 * @return the index of argb in the palette, or of the most similar color
+	 * if the palette is not exact
+	 */
+	public int indexOf(int argb) {
+		argb = normalize(argb);
+		if (!exact) return bucketIndexes[bucket(argb)];
+		int slot = slot(argb);
+		while (indexes[slot] >= 0) {
+			if (keys[slot] == argb) return indexes[slot];
+			slot = (slot + 1) & (SLOTS - 1);
+		}
+		throw new IllegalArgumentException(String.format("Color %08x is not in the palette", argb));
+	}
+
+	private static int normalize(int argb) {
+		return argb >>> 24 == 0 ? 0 : argb;
+	}
+
+	private static int slot(int argb) {
+		return (argb * 0x9E3779B9 >>> 22) & (SLOTS - 1);
+	}
+
+	private static int bucket(int argb) {
+		return (argb >>> 16 & 0xf000) | (argb >>> 12 & 0x0f00) | (argb >>> 8 & 0x00f0) | (argb >>> 4 & 0x000f);
+	}
+
+	/**
+	 * Translucent colors first
+	 */
+	private static int compare(int a, int b) {
+		return Integer.compare(a >>> 24, b >>> 24);
+	}
+
+	private static int distance(int a, int b) {
+		int distance = 0;
+		for (int shift = 0; shift < 32; shift += 8) {
+			final int d = (a >>> shift & 0xff) - (b >>> shift & 0xff);
+			distance += d * d;
+		}
+		return distance;
+	}
+
+	private static class Builder {
+
+		private final int[] keys = new int[SLOTS];
+		private final boolean[] used = new boolean[SLOTS];
+		private int size = 0;
+		private final int[] counts = new int[BUCKETS];
+		private final long[] sums = new long[4 * BUCKETS];
+
+		void add(int[] row) {
+			for (int argb : row) {
+				argb = normalize(argb);
+				if (size <= MAX_COLORS) addExact(argb);
+				final int bucket = bucket(argb);
+				counts[bucket]++;
+				sums[4 * bucket] += argb >>> 24;
+				sums[4 * bucket + 1] += argb >>> 16 & 0xff;
+				sums[4 * bucket + 2] += argb >>> 8 & 0xff;
+				sums[4 * bucket + 3] += argb & 0xff;
+			}
+		}
+
+		private void addExact(int argb) {
+			int slot = slot(argb);
+			while (used[slot]) {
+				if (keys[slot] == argb) return;
+				slot = (slot + 1) & (SLOTS - 1);
+			}
+			// size becomes MAX_COLORS + 1 when there are too many colors, and
+			// the table is not used anymore
+			size++;
+			if (size > MAX_COLORS) return;
+			used[slot] = true;
+			keys[slot] = argb;
+		}
+
+		PngPalette build() {
+			return size <= MAX_COLORS ? exact() : quantized();
+		}
+
+		private PngPalette exact() {
+			final int[] colors = new int[size];
+			for (int slot = 0, i = 0; slot < SLOTS; slot++)
+				if (used[slot]) colors[i++] = keys[slot];
+			final int[] sorted = sort(colors);
+			final PngPalette palette = new PngPalette(sorted, true);
+			palette.keys = keys;
+			palette.indexes = new int[SLOTS];
+			Arrays.fill(palette.indexes, -1);
+			for (int i = 0; i < sorted.length; i++) {
+				int slot = slot(sorted[i]);
+				while (keys[slot] != sorted[i] || !used[slot]) slot = (slot + 1) & (SLOTS - 1);
+				palette.indexes[slot] = i;
+			}
+			return palette;
+		}
+
+		private PngPalette quantized() {
+			// the most used buckets, by insertion in a sorted array
+			final int[] top = new int[MAX_COLORS];
+			int n = 0;
+			for (int bucket = 0; bucket < BUCKETS; bucket++) {
+				if (counts[bucket] == 0) continue;
+				if (n == MAX_COLORS && counts[bucket] <= counts[top[n - 1]]) continue;
+				int i = n < MAX_COLORS ? n++ : n - 1;
+				while (i > 0 && counts[top[i - 1]] < counts[bucket]) {
+					top[i] = top[i - 1];
+					i--;
+				}
+				top[i] = bucket;
+			}
+			final int[] colors = new int[n];
+			for (int i = 0; i < n; i++) colors[i] = average(top[i]);
+			final int[] sorted = sort(colors);
+			final PngPalette palette = new PngPalette(sorted, false);
+			// every bucket with pixels is mapped to its closest color
+			palette.bucketIndexes = new int[BUCKETS];
+			for (int bucket = 0; bucket < BUCKETS; bucket++) {
+				if (counts[bucket] == 0) continue;
+				final int color = average(bucket);
+				int best = 0;
+				int bestDistance = Integer.MAX_VALUE;
+				for (int i = 0; i < sorted.length && bestDistance > 0; i++) {
+					final int distance = distance(color, sorted[i]);
+					if (distance < bestDistance) {
+						bestDistance = distance;
+						best = i;
+					}
+				}
+				palette.bucketIndexes[bucket] = best;
+			}
+			return palette;
+		}
+
+		private int average(int bucket) {
+			final long count = counts[bucket];
+			final int a = (int) ((sums[4 * bucket] + count / 2) / count);
+			final int r = (int) ((sums[4 * bucket + 1] + count / 2) / count);
+			final int g = (int) ((sums[4 * bucket + 2] + count / 2) / count);
+			final int b = (int) ((sums[4 * bucket + 3] + count / 2) / count);
+			return a << 24 | r << 16 | g << 8 | b;
+		}
+
+		private static int[] sort(int[] colors) {
+			return Arrays.stream(colors).boxed()
+					.sorted(PngPalette::compare)
+					.mapToInt(Integer::intValue)
+					.toArray();
+		}
+	}
+}
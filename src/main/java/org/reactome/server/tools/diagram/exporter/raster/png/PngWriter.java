@@ -0,0 +1,530 @@
+package org.reactome.server.tools.diagram.exporter.raster.png;
+
+import java.awt.*;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes 8 bit RGB, RGBA or palette PNG images row by row, so images do not
+ * need to be in memory. Filtered rows are grouped in blocks that are compressed in
+ * parallel, each one with the tail of the previous block as dictionary, and
+ * written in order as a single zlib stream split in IDAT chunks. Small images
+ * are compressed as one block in the calling thread.
+ * <pre>
+ *     PngWriter writer = new PngWriter(outputStream, width, height, true);
+ *     writer.setLevel(6);
+ *     for (int y = 0; y < height; y++) writer.writeRow(argb(y));
+ *     writer.finish();
+ * </pre>
+ * or simply <code>new PngWriter(outputStream, width, height, true).write(image)</code>.
+ */
+public class PngWriter {
+
+	private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+	/**
+	 * uncompressed bytes per compression block
+	 */
+	private static final int BLOCK_SIZE = 1 << 18;
+	/**
+	 * max distance of deflate back references
+	 */
+	private static final int DICTIONARY_SIZE = 1 << 15;
+	private static final int ROWS_PER_READ = 64;
+	/**
+	 * images with up to this many filtered bytes are compressed in the
+	 * calling thread, as scheduling blocks would take longer than it saves
+	 */
+	private static final int SINGLE_STREAM_SIZE = 2 * BLOCK_SIZE;
+	private static final Filter[] FILTERS = Filter.values();
+
+	private final OutputStream out;
+	private final int width;
+	private final int height;
+	private final boolean alpha;
+	private final PngPalette palette;
+	private final int bytesPerPixel;
+	private final int rowLength;
+	private final Adler32 adler = new Adler32();
+	private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+	private int level = Deflater.DEFAULT_COMPRESSION;
+	private Filter filter = Filter.ADAPTIVE;
+	private Executor executor = ForkJoinPool.commonPool();
+	private int window = ForkJoinPool.getCommonPoolParallelism() + 1;
+
+	private byte[] previous;
+	private byte[] current;
+	private byte[][] candidates;
+	private byte[] block;
+	private int blockLength;
+	private byte[] dictionary;
+	private int rows = 0;
+	private boolean started = false;
+	private boolean firstChunk = true;
+	private int submitted = 0;
+	private int written = 0;
+	private boolean lastSubmitted = false;
+	private boolean singleStream;
+
+	/**
+	 * @param out    where to write the image. It is not closed
+	 * @param width  width of the image
+	 * @param height height of the image
+	 * @param alpha  whether to write the alpha channel (RGBA) or not (RGB)
+	 */
+	public PngWriter(OutputStream out, int width, int height, boolean alpha) {
+		this(out, width, height, alpha, null);
+	}
+
+	/**
+	 * Creates a writer of palette images. Pixels are written as the index of
+	 * their color in palette. Palette images are not filtered by default.
+	 *
+	 * @param out     where to write the image. It is not closed
+	 * @param width   width of the image
+	 * @param height  height of the image
+	 * @param palette colors of the image
+	 */
+	public PngWriter(OutputStream out, int width, int height, PngPalette palette) {
+		this(out, width, height, palette.hasAlpha(), palette);
+		this.filter = Filter.NONE;
+	}
+
+	private PngWriter(OutputStream out, int width, int height, boolean alpha, PngPalette palette) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException(String.format("Invalid image size %d x %d", width, height));
+		this.out = out;
+		this.width = width;
+		this.height = height;
+		this.alpha = alpha;
+		this.palette = palette;
+		this.bytesPerPixel = palette != null ? 1 : alpha ? 4 : 3;
+		this.rowLength = width * bytesPerPixel;
+	}
+
+	/**
+	 * Writes image with a new PngWriter with the default settings. Alpha is
+	 * written only if the color model of image has alpha.
+	 */
+	public static void write(RenderedImage image, OutputStream out) throws IOException {
+		write(image, out, -1);
+	}
+
+	/**
+	 * Writes image with a new PngWriter with the deflate level. Alpha is
+	 * written only if the color model of image has alpha.
+	 *
+	 * @see #setLevel(int)
+	 */
+	public static void write(RenderedImage image, OutputStream out, int level) throws IOException {
+		final PngWriter writer = new PngWriter(out, image.getWidth(), image.getHeight(), image.getColorModel().hasAlpha());
+		writer.setLevel(level);
+		writer.write(image);
+	}
+
+	/**
+	 * Writes image as a palette PNG, with the palette from {@link
+	 * PngPalette#of(RenderedImage)}. image is read twice.
+	 */
+	public static void writeIndexed(RenderedImage image, OutputStream out) throws IOException {
+		writeIndexed(image, out, -1);
+	}
+
+	/**
+	 * Writes image as a palette PNG with the deflate level.
+	 *
+	 * @see #writeIndexed(RenderedImage, OutputStream)
+	 * @see #setLevel(int)
+	 */
+	public static void writeIndexed(RenderedImage image, OutputStream out, int level) throws IOException {
+		final PngWriter writer = new PngWriter(out, image.getWidth(), image.getHeight(), PngPalette.of(image));
+		writer.setLevel(level);
+		writer.write(image);
+	}
+
+	/**
+	 * Sets the deflate level, from 0 (no compression) to 9 (best
+	 * compression), or -1 for the default. Must be called before writing.
+	 */
+	public void setLevel(int level) {
+		if (level < -1 || level > 9) throw new IllegalArgumentException("level must be in [-1, 9]: " + level);
+		checkNotStarted();
+		this.level = level;
+	}
+
+	/**
+	 * Sets the filter applied to every row. {@link Filter#ADAPTIVE}, the
+	 * default, chooses the best filter for each row. Must be called before
+	 * writing.
+	 */
+	public void setFilter(Filter filter) {
+		checkNotStarted();
+		this.filter = filter;
+	}
+
+	/**
+	 * Sets where blocks are compressed. By default, the common pool, with a
+	 * window of one block per thread, plus one. Small images are compressed
+	 * in the calling thread anyway. Must be called before writing.
+	 *
+	 * @param executor where blocks are compressed
+	 * @param window   max number of blocks waiting to be written
+	 */
+	public void setExecutor(Executor executor, int window) {
+		if (window < 1) throw new IllegalArgumentException("window must be positive: " + window);
+		checkNotStarted();
+		this.executor = executor;
+		this.window = window;
+	}
+
+	/**
+	 * Writes every row of image, reading a few rows at a time, and finishes
+	 * the file.
+	 */
+	public void write(RenderedImage image) throws IOException {
+		if (image.getWidth() != width || image.getHeight() != height)
+			throw new IllegalArgumentException("image size does not match the size of the writer");
+		readRows(image, this::writeRow);
+		finish();
+	}
+
+	/**
+	 * Reads the rows of image, a few at a time, as ARGB values. The same
+	 * array is passed for every row.
+	 */
+	static void readRows(RenderedImage image, RowConsumer consumer) throws IOException {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final ColorModel colorModel = image.getColorModel();
+		// INT_ARGB and INT_RGB rasters already contain ARGB values
+		final boolean argb = colorModel instanceof DirectColorModel
+				&& image.getSampleModel().getTransferType() == DataBuffer.TYPE_INT
+				&& ((DirectColorModel) colorModel).getRedMask() == 0xff0000
+				&& ((DirectColorModel) colorModel).getGreenMask() == 0xff00
+				&& ((DirectColorModel) colorModel).getBlueMask() == 0xff
+				&& (!colorModel.hasAlpha() || ((DirectColorModel) colorModel).getAlphaMask() == 0xff000000)
+				&& !colorModel.isAlphaPremultiplied();
+		final int[] row = new int[width];
+		for (int y = 0; y < height; y += ROWS_PER_READ) {
+			final int n = Math.min(ROWS_PER_READ, height - y);
+			final Raster raster = image.getData(new Rectangle(image.getMinX(), image.getMinY() + y, width, n));
+			for (int i = 0; i < n; i++) {
+				final int rowY = raster.getMinY() + i;
+				if (argb) {
+					raster.getDataElements(raster.getMinX(), rowY, width, 1, row);
+					if (!colorModel.hasAlpha()) for (int x = 0; x < width; x++) row[x] |= 0xff000000;
+				} else {
+					Object pixel = null;
+					for (int x = 0; x < width; x++) {
+						pixel = raster.getDataElements(raster.getMinX() + x, rowY, pixel);
+						row[x] = colorModel.getRGB(pixel);
+					}
+				}
+				consumer.accept(row);
+			}
+		}
+	}
+
+	/**
+	 * Writes the next row.
+	 *
+	 * @param argb one ARGB value per pixel, as in {@link
+	 *             java.awt.image.BufferedImage#getRGB(int, int)}
+	 */
+	public void writeRow(int[] argb) throws IOException {
+		if (argb.length < width) throw new IllegalArgumentException("row is shorter than the image width");
+		if (rows == height) throw new IllegalStateException("All the rows have been written");
+		if (!started) start();
+		if (palette != null) {
+			for (int x = 0; x < width; x++) current[x] = (byte) palette.indexOf(argb[x]);
+		} else for (int x = 0, i = 0; x < width; x++) {
+			final int pixel = argb[x];
+			current[i++] = (byte) (pixel >> 16);
+			current[i++] = (byte) (pixel >> 8);
+			current[i++] = (byte) pixel;
+			if (alpha) current[i++] = (byte) (pixel >>> 24);
+		}
+		if (blockLength + rowLength + 1 > block.length) submit(false);
+		final int start = blockLength;
+		blockLength += filter(current, previous, block, blockLength);
+		adler.update(block, start, blockLength - start);
+		final byte[] swap = previous;
+		previous = current;
+		current = swap;
+		rows++;
+	}
+
+	/**
+	 * Writes the pending blocks and the end of the image. out is flushed,
+	 * but not closed.
+	 */
+	public void finish() throws IOException {
+		if (rows != height)
+			throw new IllegalStateException(String.format("Only %d of %d rows have been written", rows, height));
+		try {
+			submit(true);
+			while (!pending.isEmpty()) writeNext();
+			writeChunk("IEND", new byte[0], 0);
+			out.flush();
+		} finally {
+			pending.forEach(future -> future.cancel(false));
+			pending.clear();
+		}
+	}
+
+	private void checkNotStarted() {
+		if (started) throw new IllegalStateException("Writing has already started");
+	}
+
+	private void start() throws IOException {
+		started = true;
+		previous = new byte[rowLength];
+		current = new byte[rowLength];
+		final long size = (long) height * (rowLength + 1);
+		singleStream = size <= SINGLE_STREAM_SIZE;
+		block = new byte[singleStream ? (int) size : Math.max(BLOCK_SIZE, rowLength + 1)];
+		if (filter == Filter.ADAPTIVE) {
+			candidates = new byte[Filter.ADAPTIVE.ordinal()][rowLength + 1];
+		}
+		out.write(SIGNATURE);
+		final byte[] header = new byte[13];
+		writeInt(header, 0, width);
+		writeInt(header, 4, height);
+		header[8] = 8; // bit depth
+		header[9] = (byte) (palette != null ? 3 : alpha ? 6 : 2); // color type: palette, RGBA or RGB
+		// compression, filter and interlace methods are 0
+		writeChunk("IHDR", header, header.length);
+		if (palette != null) {
+			final int[] colors = palette.getColors();
+			final byte[] rgb = new byte[3 * colors.length];
+			// alpha of every color up to the last translucent one
+			final byte[] transparency = new byte[colors.length];
+			int transparent = 0;
+			for (int i = 0; i < colors.length; i++) {
+				rgb[3 * i] = (byte) (colors[i] >> 16);
+				rgb[3 * i + 1] = (byte) (colors[i] >> 8);
+				rgb[3 * i + 2] = (byte) colors[i];
+				transparency[i] = (byte) (colors[i] >>> 24);
+				if (colors[i] >>> 24 != 0xff) transparent = i + 1;
+			}
+			writeChunk("PLTE", rgb, rgb.length);
+			if (transparent > 0) writeChunk("tRNS", transparency, transparent);
+		}
+	}
+
+	/**
+	 * Filters row into dest, preceded by the filter type.
+	 *
+	 * @return number of bytes written into dest
+	 */
+	private int filter(byte[] row, byte[] previous, byte[] dest, int offset) {
+		if (filter != Filter.ADAPTIVE) {
+			filter(filter, row, previous, dest, offset);
+			return rowLength + 1;
+		}
+		// the filter with the lowest sum of absolute differences usually
+		// compresses better
+		int best = 0;
+		long bestSum = Long.MAX_VALUE;
+		for (int type = 0; type < candidates.length; type++) {
+			final byte[] candidate = candidates[type];
+			filter(FILTERS[type], row, previous, candidate, 0);
+			long sum = 0;
+			for (int i = 1; i < candidate.length && sum < bestSum; i++) sum += Math.abs(candidate[i]);
+			if (sum < bestSum) {
+				bestSum = sum;
+				best = type;
+			}
+		}
+		System.arraycopy(candidates[best], 0, dest, offset, rowLength + 1);
+		return rowLength + 1;
+	}
+
+	private void filter(Filter type, byte[] row, byte[] previous, byte[] dest, int offset) {
+		final int bpp = bytesPerPixel;
+		dest[offset++] = (byte) type.ordinal();
+		switch (type) {
+			case NONE:
+				System.arraycopy(row, 0, dest, offset, rowLength);
+				break;
+			case SUB:
+				for (int i = 0; i < rowLength; i++)
+					dest[offset + i] = (byte) (row[i] - (i < bpp ? 0 : row[i - bpp]));
+				break;
+			case UP:
+				for (int i = 0; i < rowLength; i++)
+					dest[offset + i] = (byte) (row[i] - previous[i]);
+				break;
+			case AVERAGE:
+				for (int i = 0; i < rowLength; i++) {
+					final int a = i < bpp ? 0 : row[i - bpp] & 0xff;
+					dest[offset + i] = (byte) (row[i] - ((a + (previous[i] & 0xff)) >> 1));
+				}
+				break;
+			case PAETH:
+				for (int i = 0; i < rowLength; i++) {
+					final int a = i < bpp ? 0 : row[i - bpp] & 0xff;
+					final int b = previous[i] & 0xff;
+					final int c = i < bpp ? 0 : previous[i - bpp] & 0xff;
+					dest[offset + i] = (byte) (row[i] - paeth(a, b, c));
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Not a PNG filter: " + type);
+		}
+	}
+
+	private static int paeth(int a, int b, int c) {
+		final int p = a + b - c;
+		final int pa = Math.abs(p - a);
+		final int pb = Math.abs(p - b);
+		final int pc = Math.abs(p - c);
+		if (pa <= pb && pa <= pc) return a;
+		if (pb <= pc) return b;
+		return c;
+	}
+
+	/**
+	 * Sends the current block to compress, and writes the oldest blocks
+	 * while the window is full.
+	 */
+	private void submit(boolean last) throws IOException {
+		final byte[] data = block;
+		final int length = blockLength;
+		final byte[] dictionary = this.dictionary;
+		final int level = this.level;
+		if (!last) {
+			this.dictionary = Arrays.copyOfRange(data, Math.max(0, length - DICTIONARY_SIZE), length);
+			block = new byte[block.length];
+			blockLength = 0;
+		}
+		while (pending.size() >= window) writeNext();
+		if (singleStream)
+			pending.add(CompletableFuture.completedFuture(deflate(data, length, dictionary, level, last)));
+		else
+			pending.add(CompletableFuture.supplyAsync(() -> deflate(data, length, dictionary, level, last), executor));
+		submitted++;
+		lastSubmitted = last;
+	}
+
+	/**
+	 * Compresses a block into raw deflate data. Blocks other than the last
+	 * one end with a sync flush, so they can be concatenated.
+	 */
+	private static byte[] deflate(byte[] data, int length, byte[] dictionary, int level, boolean last) {
+		final Deflater deflater = new Deflater(level, true);
+		try {
+			if (dictionary != null && dictionary.length > 0) deflater.setDictionary(dictionary);
+			deflater.setInput(data, 0, length);
+			final ByteArrayOutputStream os = new ByteArrayOutputStream(length / 4 + 64);
+			final byte[] buffer = new byte[1 << 16];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) os.write(buffer, 0, deflater.deflate(buffer));
+			} else {
+				int n;
+				do {
+					n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					os.write(buffer, 0, n);
+				} while (n == buffer.length);
+			}
+			return os.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private void writeNext() throws IOException {
+		byte[] data;
+		try {
+			data = pending.removeFirst().join();
+		} catch (CompletionException e) {
+			pending.forEach(future -> future.cancel(false));
+			pending.clear();
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw e;
+		}
+		if (firstChunk) {
+			firstChunk = false;
+			data = concat(zlibHeader(), data);
+		}
+		written++;
+		if (lastSubmitted && written == submitted) {
+			// the zlib stream ends with the checksum of the filtered rows
+			final byte[] checksum = new byte[4];
+			writeInt(checksum, 0, (int) adler.getValue());
+			data = concat(data, checksum);
+		}
+		writeChunk("IDAT", data, data.length);
+	}
+
+	private byte[] zlibHeader() {
+		final int cmf = 0x78; // deflate, 32K window
+		final int flevel = level == -1 || level == 6 ? 2 : level < 2 ? 0 : level < 6 ? 1 : 3;
+		int flg = flevel << 6;
+		flg += 31 - (cmf * 256 + flg) % 31;
+		return new byte[]{(byte) cmf, (byte) flg};
+	}
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		final byte[] result = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+
+	private void writeChunk(String type, byte[] data, int length) throws IOException {
+		final byte[] header = new byte[8];
+		writeInt(header, 0, length);
+		final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(typeBytes, 0, header, 4, 4);
+		final CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+		final byte[] crcBytes = new byte[4];
+		writeInt(crcBytes, 0, (int) crc.getValue());
+		out.write(header);
+		out.write(data, 0, length);
+		out.write(crcBytes);
+	}
+
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+
+	@FunctionalInterface
+	interface RowConsumer {
+		void accept(int[] argb) throws IOException;
+	}
+
+	/**
+	 * PNG row filters. The ordinal of each filter, except ADAPTIVE, is its
+	 * PNG filter type.
+	 */
+	public enum Filter {
+		NONE, SUB, UP, AVERAGE, PAETH,
+		/**
+		 * chooses the filter of each row by the minimum sum of absolute
+		 * differences
+		 */
+		ADAPTIVE
+	}
+}
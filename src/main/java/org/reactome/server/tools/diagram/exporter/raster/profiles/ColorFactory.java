@@ -3,6 +3,7 @@ package org.reactome.server.tools.diagram.exporter.raster.profiles;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -16,7 +17,7 @@ public class ColorFactory {
 	// speed up with a color cache
 	// of course, this shouldn't be necessary if the Profiles already had the
 	// colors parsed
-	private static final Map<String, Color> cache = new HashMap<>();
+	private static final Map<String, Color> cache = new ConcurrentHashMap<>();
 	private static final float INV_255 = 0.003921569f; // 1 / 255
 
 	public static Color parseColor(String color) {
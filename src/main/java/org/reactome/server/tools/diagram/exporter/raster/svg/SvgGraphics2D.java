@@ -0,0 +1,543 @@
+package org.reactome.server.tools.diagram.exporter.raster.svg;
+
+import org.apache.batik.ext.awt.g2d.AbstractGraphics2D;
+import org.reactome.server.tools.diagram.exporter.raster.png.PngWriter;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.text.AttributedCharacterIterator;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Graphics2D that writes SVG elements to a Writer as they are drawn, without
+ * building a DOM. Paths are written in device coordinates, with a fixed number
+ * of decimals. Every combination of paint, stroke and font becomes a CSS class,
+ * declared in a style element at the end of the document.
+ * <pre>
+ *     SvgGraphics2D graphics = new SvgGraphics2D(writer, viewBox, 2);
+ *     canvas.render(graphics);
+ *     graphics.finish();
+ * </pre>
+ * Only solid colors, {@link GradientPaint} and {@link LinearGradientPaint}
+ * are supported, the latter two as vertical gradients like the ones of the
+ * legend. Other paints are written as black. Composites and XOR mode are
+ * ignored.
+ */
+public class SvgGraphics2D extends AbstractGraphics2D {
+
+	private static final Graphics2D METRICS = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+	/**
+	 * decimals of the values of transforms, which are usually scales
+	 */
+	private static final int TRANSFORM_PRECISION = 6;
+
+	private final Output out;
+
+	/**
+	 * Writes the header of the SVG document. Nothing else is written until
+	 * something is drawn.
+	 *
+	 * @param writer    where to write the document. It is not closed
+	 * @param viewBox   the viewBox of the root element
+	 * @param precision number of decimals of coordinates
+	 */
+	public SvgGraphics2D(Writer writer, Rectangle2D viewBox, int precision) throws IOException {
+		super(false);
+		if (precision < 0 || precision > 6) throw new IllegalArgumentException("precision must be in [0, 6]: " + precision);
+		this.out = new Output(writer, precision);
+		final StringBuilder sb = out.sb;
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n")
+				.append("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\"")
+				.append(" version=\"1.1\" xml:space=\"preserve\" viewBox=\"");
+		out.number(viewBox.getX()).append(' ');
+		out.number(viewBox.getY()).append(' ');
+		out.number(viewBox.getWidth()).append(' ');
+		out.number(viewBox.getHeight()).append("\">\n");
+		out.write();
+	}
+
+	private SvgGraphics2D(SvgGraphics2D graphics) {
+		super(graphics);
+		this.out = graphics.out;
+	}
+
+	/**
+	 * Writes the style element and closes the svg element. The writer is
+	 * flushed, but not closed.
+	 */
+	public void finish() throws IOException {
+		final StringBuilder sb = out.sb;
+		if (!out.classes.isEmpty()) {
+			sb.append("<style type=\"text/css\"><![CDATA[\n");
+			out.classes.forEach((style, name) -> sb.append('.').append(name).append('{').append(style).append("}\n"));
+			sb.append("]]></style>\n");
+		}
+		sb.append("</svg>\n");
+		out.write();
+		out.writer.flush();
+	}
+
+	@Override
+	public Graphics create() {
+		return new SvgGraphics2D(this);
+	}
+
+	@Override
+	public void dispose() {
+	}
+
+	@Override
+	public void draw(Shape shape) {
+		final Stroke stroke = getStroke();
+		if (!(stroke instanceof BasicStroke)) {
+			fill(stroke.createStrokedShape(shape));
+			return;
+		}
+		final BasicStroke basicStroke = (BasicStroke) stroke;
+		final AffineTransform transform = getTransform();
+		// coordinates are in device space, so are stroke widths
+		final double scale = Math.sqrt(Math.abs(transform.getDeterminant()));
+		final StringBuilder style = out.style;
+		style.setLength(0);
+		style.append("fill:none;stroke:");
+		paint(style, getPaint(), "stroke");
+		style.append(";stroke-width:");
+		out.number(style, basicStroke.getLineWidth() * scale);
+		if (basicStroke.getEndCap() != BasicStroke.CAP_BUTT)
+			style.append(";stroke-linecap:").append(basicStroke.getEndCap() == BasicStroke.CAP_ROUND ? "round" : "square");
+		if (basicStroke.getLineJoin() != BasicStroke.JOIN_MITER)
+			style.append(";stroke-linejoin:").append(basicStroke.getLineJoin() == BasicStroke.JOIN_ROUND ? "round" : "bevel");
+		else if (basicStroke.getMiterLimit() != 4) {
+			style.append(";stroke-miterlimit:");
+			out.number(style, basicStroke.getMiterLimit());
+		}
+		if (basicStroke.getDashArray() != null) {
+			style.append(";stroke-dasharray:");
+			final float[] dashes = basicStroke.getDashArray();
+			for (int i = 0; i < dashes.length; i++) {
+				if (i > 0) style.append(',');
+				out.number(style, dashes[i] * scale);
+			}
+			if (basicStroke.getDashPhase() != 0) {
+				style.append(";stroke-dashoffset:");
+				out.number(style, basicStroke.getDashPhase() * scale);
+			}
+		}
+		shape(shape, transform, out.className(style));
+	}
+
+	@Override
+	public void fill(Shape shape) {
+		final AffineTransform transform = getTransform();
+		final StringBuilder style = out.style;
+		style.setLength(0);
+		style.append("fill:");
+		paint(style, getPaint(), "fill");
+		if (shape.getPathIterator(null).getWindingRule() == PathIterator.WIND_EVEN_ODD)
+			style.append(";fill-rule:evenodd");
+		shape(shape, transform, out.className(style));
+	}
+
+	private void shape(Shape shape, AffineTransform transform, String className) {
+		final StringBuilder sb = out.sb;
+		final String clip = clipPath();
+		if (clip != null) sb.append("<g clip-path=\"url(#").append(clip).append(")\">");
+		if (shape instanceof Rectangle2D && isTranslateScale(transform)) {
+			final Rectangle2D rectangle = (Rectangle2D) shape;
+			final double x = transform.getScaleX() * rectangle.getX() + transform.getTranslateX();
+			final double y = transform.getScaleY() * rectangle.getY() + transform.getTranslateY();
+			final double width = transform.getScaleX() * rectangle.getWidth();
+			final double height = transform.getScaleY() * rectangle.getHeight();
+			sb.append("<rect class=\"").append(className).append("\" x=\"");
+			out.number(Math.min(x, x + width)).append("\" y=\"");
+			out.number(Math.min(y, y + height)).append("\" width=\"");
+			out.number(Math.abs(width)).append("\" height=\"");
+			out.number(Math.abs(height)).append("\"/>");
+		} else {
+			sb.append("<path class=\"").append(className).append("\" d=\"");
+			path(shape, transform);
+			sb.append("\"/>");
+		}
+		if (clip != null) sb.append("</g>");
+		sb.append('\n');
+		out.flushIfFull();
+	}
+
+	private void path(Shape shape, AffineTransform transform) {
+		final double[] coords = out.coords;
+		final PathIterator iterator = shape.getPathIterator(transform);
+		while (!iterator.isDone()) {
+			switch (iterator.currentSegment(coords)) {
+				case PathIterator.SEG_MOVETO:
+					points('M', 1);
+					break;
+				case PathIterator.SEG_LINETO:
+					points('L', 1);
+					break;
+				case PathIterator.SEG_QUADTO:
+					points('Q', 2);
+					break;
+				case PathIterator.SEG_CUBICTO:
+					points('C', 3);
+					break;
+				case PathIterator.SEG_CLOSE:
+					out.sb.append('Z');
+					break;
+			}
+			iterator.next();
+		}
+	}
+
+	private void points(char command, int points) {
+		final StringBuilder sb = out.sb;
+		sb.append(command);
+		for (int i = 0; i < 2 * points; i++) {
+			if (i > 0) sb.append(' ');
+			out.number(out.coords[i]);
+		}
+	}
+
+	/**
+	 * Appends the value of a fill or stroke property for paint.
+	 *
+	 * @param property fill or stroke, for the opacity
+	 */
+	private void paint(StringBuilder style, Paint paint, String property) {
+		if (paint instanceof Color) {
+			final Color color = (Color) paint;
+			hex(style, color);
+			if (color.getAlpha() != 255) {
+				style.append(';').append(property).append("-opacity:");
+				out.number(style, color.getAlpha() / 255.0);
+			}
+		} else if (paint instanceof GradientPaint) {
+			final GradientPaint gradient = (GradientPaint) paint;
+			style.append("url(#").append(gradient(new Color[]{gradient.getColor1(), gradient.getColor2()}, new float[]{0, 1})).append(')');
+		} else if (paint instanceof LinearGradientPaint) {
+			final LinearGradientPaint gradient = (LinearGradientPaint) paint;
+			style.append("url(#").append(gradient(gradient.getColors(), gradient.getFractions())).append(')');
+		} else style.append("#000000");
+	}
+
+	/**
+	 * Writes the definition of a vertical gradient, from bottom to top, the
+	 * first time it is used.
+	 *
+	 * @return the id of the gradient
+	 */
+	private String gradient(Color[] colors, float[] fractions) {
+		final StringBuilder stops = new StringBuilder();
+		for (int i = 0; i < colors.length; i++) {
+			stops.append("<stop offset=\"");
+			out.number(stops, fractions[i]).append("\" stop-color=\"");
+			hex(stops, colors[i]).append('"');
+			if (colors[i].getAlpha() != 255) {
+				stops.append(" stop-opacity=\"");
+				out.number(stops, colors[i].getAlpha() / 255.0).append('"');
+			}
+			stops.append("/>");
+		}
+		return out.gradients.computeIfAbsent(stops.toString(), key -> {
+			final String id = "g" + out.gradients.size();
+			out.sb.append("<defs><linearGradient id=\"").append(id).append("\" x1=\"0\" y1=\"1\" x2=\"0\" y2=\"0\">")
+					.append(key)
+					.append("</linearGradient></defs>\n");
+			return id;
+		});
+	}
+
+	/**
+	 * Writes the current clip as a clipPath the first time it is used.
+	 *
+	 * @return the id of the clipPath, or null if there is no clip
+	 */
+	private String clipPath() {
+		final Shape clip = getClip();
+		if (clip == null) return null;
+		final StringBuilder sb = out.sb;
+		final int start = sb.length();
+		path(clip, getTransform());
+		final String d = sb.substring(start);
+		sb.setLength(start);
+		return out.clips.computeIfAbsent(d, key -> {
+			final String id = "c" + out.clips.size();
+			sb.append("<defs><clipPath id=\"").append(id).append("\"><path d=\"").append(key).append("\"/></clipPath></defs>\n");
+			return id;
+		});
+	}
+
+	@Override
+	public void drawString(String text, float x, float y) {
+		if (text.isEmpty()) return;
+		final Font font = getFont();
+		final AffineTransform transform = getTransform();
+		// with translations and uniform scales, text is written in device space
+		final boolean device = isTranslateScale(transform) && transform.getScaleX() == transform.getScaleY() && transform.getScaleX() > 0;
+		final double scale = device ? transform.getScaleX() : 1;
+		final StringBuilder style = out.style;
+		style.setLength(0);
+		style.append("fill:");
+		paint(style, getPaint(), "fill");
+		style.append(";font-family:'").append(font.getFamily().replace("'", "")).append("';font-size:");
+		out.number(style, font.getSize2D() * scale);
+		if (font.isBold() || font.getFontName().toLowerCase().contains("bold")) style.append(";font-weight:bold");
+		if (font.isItalic()) style.append(";font-style:italic");
+		final String className = out.className(style);
+
+		final StringBuilder sb = out.sb;
+		final String clip = clipPath();
+		if (clip != null) sb.append("<g clip-path=\"url(#").append(clip).append(")\">");
+		sb.append("<text class=\"").append(className).append("\" x=\"");
+		if (device) {
+			out.number(scale * x + transform.getTranslateX()).append("\" y=\"");
+			out.number(scale * y + transform.getTranslateY()).append('"');
+		} else {
+			out.number(x).append("\" y=\"");
+			out.number(y).append('"');
+			transformAttribute(transform);
+		}
+		sb.append('>');
+		escape(text);
+		sb.append("</text>");
+		if (clip != null) sb.append("</g>");
+		sb.append('\n');
+		out.flushIfFull();
+	}
+
+	@Override
+	public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+		final StringBuilder text = new StringBuilder();
+		for (char c = iterator.first(); c != AttributedCharacterIterator.DONE; c = iterator.next())
+			text.append(c);
+		drawString(text.toString(), x, y);
+	}
+
+	@Override
+	public boolean drawImage(Image image, int x, int y, ImageObserver observer) {
+		return drawImage(image, x, y, image.getWidth(observer), image.getHeight(observer), observer);
+	}
+
+	@Override
+	public boolean drawImage(Image image, int x, int y, int width, int height, ImageObserver observer) {
+		image(image, x, y, width, height, getTransform());
+		return true;
+	}
+
+	@Override
+	public void drawRenderedImage(RenderedImage image, AffineTransform transform) {
+		final AffineTransform t = getTransform();
+		t.concatenate(transform);
+		image(image, 0, 0, image.getWidth(), image.getHeight(), t);
+	}
+
+	@Override
+	public void drawRenderableImage(RenderableImage image, AffineTransform transform) {
+		drawRenderedImage(image.createDefaultRendering(), transform);
+	}
+
+	private void image(Object image, double x, double y, double width, double height, AffineTransform transform) {
+		if (width <= 0 || height <= 0) return;
+		final String data = out.images.computeIfAbsent(image, SvgGraphics2D::encode);
+		final StringBuilder sb = out.sb;
+		final String clip = clipPath();
+		if (clip != null) sb.append("<g clip-path=\"url(#").append(clip).append(")\">");
+		sb.append("<image x=\"");
+		out.number(x).append("\" y=\"");
+		out.number(y).append("\" width=\"");
+		out.number(width).append("\" height=\"");
+		out.number(height).append("\" preserveAspectRatio=\"none\"");
+		transformAttribute(transform);
+		sb.append(" xlink:href=\"data:image/png;base64,").append(data).append("\"/>");
+		if (clip != null) sb.append("</g>");
+		sb.append('\n');
+		out.flushIfFull();
+	}
+
+	private static String encode(Object image) {
+		final RenderedImage rendered;
+		if (image instanceof RenderedImage) rendered = (RenderedImage) image;
+		else {
+			final Image awtImage = (Image) image;
+			final BufferedImage bufferedImage = new BufferedImage(awtImage.getWidth(null), awtImage.getHeight(null), BufferedImage.TYPE_INT_ARGB);
+			final Graphics2D graphics = bufferedImage.createGraphics();
+			graphics.drawImage(awtImage, 0, 0, null);
+			graphics.dispose();
+			rendered = bufferedImage;
+		}
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try {
+			PngWriter.write(rendered, os);
+		} catch (IOException e) {
+			// written in memory
+			throw new UncheckedIOException(e);
+		}
+		return Base64.getEncoder().encodeToString(os.toByteArray());
+	}
+
+	/**
+	 * Appends a transform attribute, unless transform is the identity.
+	 */
+	private void transformAttribute(AffineTransform transform) {
+		if (transform.isIdentity()) return;
+		final StringBuilder sb = out.sb;
+		final double[] matrix = new double[6];
+		transform.getMatrix(matrix);
+		sb.append(" transform=\"matrix(");
+		for (int i = 0; i < 6; i++) {
+			if (i > 0) sb.append(' ');
+			Output.number(sb, matrix[i], TRANSFORM_PRECISION);
+		}
+		sb.append(")\"");
+	}
+
+	private void escape(String text) {
+		final StringBuilder sb = out.sb;
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			switch (c) {
+				case '&':
+					sb.append("&amp;");
+					break;
+				case '<':
+					sb.append("&lt;");
+					break;
+				case '>':
+					sb.append("&gt;");
+					break;
+				default:
+					// control characters are not allowed in XML 1.0
+					if (c >= 0x20 || c == '\t') sb.append(c);
+			}
+		}
+	}
+
+	private static StringBuilder hex(StringBuilder sb, Color color) {
+		final String hex = Integer.toHexString(color.getRGB() & 0xffffff);
+		sb.append('#');
+		for (int i = hex.length(); i < 6; i++) sb.append('0');
+		return sb.append(hex);
+	}
+
+	private static boolean isTranslateScale(AffineTransform transform) {
+		return (transform.getType() & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE | AffineTransform.TYPE_GENERAL_SCALE)) == 0;
+	}
+
+	@Override
+	public FontMetrics getFontMetrics(Font font) {
+		synchronized (METRICS) {
+			return METRICS.getFontMetrics(font);
+		}
+	}
+
+	@Override
+	public GraphicsConfiguration getDeviceConfiguration() {
+		return null;
+	}
+
+	@Override
+	public void setXORMode(Color color) {
+	}
+
+	@Override
+	public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+	}
+
+	/**
+	 * State shared by a graphics and the ones created from it.
+	 */
+	private static class Output {
+
+		/**
+		 * elements are written when the buffer reaches this size
+		 */
+		private static final int BUFFER = 1 << 14;
+
+		private final Writer writer;
+		private final int precision;
+		private final StringBuilder sb = new StringBuilder(2 * BUFFER);
+		private final StringBuilder style = new StringBuilder();
+		private final double[] coords = new double[6];
+		private final Map<String, String> classes = new LinkedHashMap<>();
+		private final Map<String, String> gradients = new HashMap<>();
+		private final Map<String, String> clips = new HashMap<>();
+		private final Map<Object, String> images = new IdentityHashMap<>();
+
+		Output(Writer writer, int precision) {
+			this.writer = writer;
+			this.precision = precision;
+		}
+
+		String className(StringBuilder style) {
+			final String key = style.toString();
+			final String name = classes.get(key);
+			if (name != null) return name;
+			final String newName = "s" + classes.size();
+			classes.put(key, newName);
+			return newName;
+		}
+
+		StringBuilder number(double value) {
+			return number(sb, value, precision);
+		}
+
+		StringBuilder number(StringBuilder sb, double value) {
+			return number(sb, value, precision);
+		}
+
+		/**
+		 * Appends value with at most precision decimals, without trailing
+		 * zeros.
+		 */
+		static StringBuilder number(StringBuilder sb, double value, int precision) {
+			if (Double.isNaN(value) || Double.isInfinite(value)) return sb.append(0);
+			long scale = 1;
+			for (int i = 0; i < precision; i++) scale *= 10;
+			long scaled = Math.round(value * scale);
+			if (scaled < 0) {
+				sb.append('-');
+				scaled = -scaled;
+			}
+			sb.append(scaled / scale);
+			long decimals = scaled % scale;
+			if (decimals != 0) {
+				sb.append('.');
+				for (long digit = scale / 10; decimals > 0; digit /= 10) {
+					sb.append((char) ('0' + decimals / digit));
+					decimals %= digit;
+				}
+			}
+			return sb;
+		}
+
+		/**
+		 * Graphics2D methods cannot throw IOException, so it is wrapped
+		 */
+		void flushIfFull() {
+			if (sb.length() < BUFFER) return;
+			try {
+				write();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		void write() throws IOException {
+			writer.append(sb);
+			sb.setLength(0);
+		}
+	}
+}
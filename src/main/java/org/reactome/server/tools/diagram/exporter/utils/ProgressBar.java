@@ -12,11 +12,12 @@ public class ProgressBar {
     private static final int width = 70;
 
     /**
-     * Simple method that prints a progress bar to command line
+     * Simple method that prints a progress bar to command line. Synchronized so
+     * parallel exports do not interleave their output
      *
      * @param done Number of entries added to the graph
      */
-    public static void updateProgressBar(String current, int done, int total) {
+    public static synchronized void updateProgressBar(String current, int done, int total) {
         if(!Main.verbose) return;
         current = (total == done) ? "" : " [current:" + current + "]";
 
@@ -32,7 +33,7 @@ public class ProgressBar {
         System.out.printf(format, (int) (percent * 100), progress, rotators[done % rotators.length], current);
     }
 
-    public static void done(int total) {
+    public static synchronized void done(int total) {
         if(!Main.verbose) return;
         updateProgressBar("", total, total);
         System.out.println("\n"); //Yes, two new lines :-)
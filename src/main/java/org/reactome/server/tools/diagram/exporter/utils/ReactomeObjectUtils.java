@@ -14,7 +14,7 @@ import java.util.List;
 @Component
 public class ReactomeObjectUtils {
 
-    private static AdvancedDatabaseObjectService advancedDatabaseObjectService;
+    private static volatile AdvancedDatabaseObjectService advancedDatabaseObjectService;
 
     @Autowired
     public ReactomeObjectUtils(AdvancedDatabaseObjectService advancedDatabaseObjectService) {
@@ -23,9 +23,7 @@ public class ReactomeObjectUtils {
 
     public static boolean pharmGKBExists(String id) {
         boolean pharmGKB = false;
-        if (advancedDatabaseObjectService == null)
-            advancedDatabaseObjectService = ReactomeGraphCore.getService(AdvancedDatabaseObjectService.class);
-        DatabaseObject databaseObject = advancedDatabaseObjectService.findById(id, RelationshipDirection.OUTGOING);
+        DatabaseObject databaseObject = getService().findById(id, RelationshipDirection.OUTGOING);
 
         if (databaseObject instanceof Pathway) {
             List<DatabaseIdentifier> databaseNames = ((Pathway) databaseObject).getCrossReference();
@@ -33,4 +31,16 @@ public class ReactomeObjectUtils {
         }
         return pharmGKB;
     }
+
+    private static AdvancedDatabaseObjectService getService() {
+        AdvancedDatabaseObjectService service = advancedDatabaseObjectService;
+        if (service == null) {
+            synchronized (ReactomeObjectUtils.class) {
+                service = advancedDatabaseObjectService;
+                if (service == null)
+                    advancedDatabaseObjectService = service = ReactomeGraphCore.getService(AdvancedDatabaseObjectService.class);
+            }
+        }
+        return service;
+    }
 }
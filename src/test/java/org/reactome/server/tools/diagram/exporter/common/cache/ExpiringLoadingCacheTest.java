@@ -0,0 +1,118 @@
+package org.reactome.server.tools.diagram.exporter.common.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ExpiringLoadingCacheTest {
+
+    @Test
+    public void testValuesExpire() {
+        final AtomicLong clock = new AtomicLong();
+        final AtomicInteger loads = new AtomicInteger();
+        final ExpiringLoadingCache<String, String, RuntimeException> cache = new ExpiringLoadingCache<>(10, 5, TimeUnit.NANOSECONDS, RuntimeException.class, clock::get);
+        final ExpiringLoadingCache.Loader<String, String, RuntimeException> loader = key -> key + loads.incrementAndGet();
+        Assertions.assertEquals("a1", cache.get("a", loader));
+        clock.set(4);
+        Assertions.assertEquals("a1", cache.get("a", loader));
+        clock.set(5);
+        Assertions.assertEquals("a2", cache.get("a", loader));
+        Assertions.assertEquals(1, cache.getStats().getHits());
+        Assertions.assertEquals(2, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        final ExpiringLoadingCache<String, String, RuntimeException> cache = new ExpiringLoadingCache<>(2, 1, TimeUnit.MINUTES, RuntimeException.class);
+        final AtomicInteger loads = new AtomicInteger();
+        final ExpiringLoadingCache.Loader<String, String, RuntimeException> loader = key -> key + loads.incrementAndGet();
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.get("a", loader);
+        cache.get("c", loader);
+        Assertions.assertEquals("a1", cache.get("a", loader));
+        Assertions.assertEquals("b4", cache.get("b", loader));
+        Assertions.assertEquals(2, cache.getStats().getEvictions());
+    }
+
+    @Test
+    public void testFailuresAreNotCached() throws IOException {
+        final ExpiringLoadingCache<String, String, IOException> cache = new ExpiringLoadingCache<>(10, 1, TimeUnit.MINUTES, IOException.class);
+        Assertions.assertThrows(IOException.class, () -> cache.get("a", key -> {
+            throw new IOException("gone");
+        }));
+        Assertions.assertEquals("A", cache.get("a", key -> "A"));
+        Assertions.assertEquals(0, cache.getStats().getEvictions());
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneLoad() throws Exception {
+        final ExpiringLoadingCache<String, String, InterruptedException> cache = new ExpiringLoadingCache<>(10, 1, TimeUnit.MINUTES, InterruptedException.class);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExpiringLoadingCache.Loader<String, String, InterruptedException> loader = key -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return "A";
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<String> first = executor.submit(() -> cache.get("a", loader));
+            loading.await();
+            final Future<String> second = executor.submit(() -> cache.get("a", loader));
+            // the second request is waiting for the first load
+            while (cache.getStats().getMisses() < 2) Thread.sleep(1);
+            release.countDown();
+            Assertions.assertEquals("A", first.get());
+            Assertions.assertEquals("A", second.get());
+            Assertions.assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWaitersShareTheFailedLoad() throws Exception {
+        final ExpiringLoadingCache<String, String, IOException> cache = new ExpiringLoadingCache<>(10, 1, TimeUnit.MINUTES, IOException.class);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final IOException gone = new IOException("gone");
+        final ExpiringLoadingCache.Loader<String, String, IOException> loader = key -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            throw gone;
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<String> first = executor.submit(() -> cache.get("a", loader));
+            loading.await();
+            final Future<String> second = executor.submit(() -> cache.get("a", loader));
+            while (cache.getStats().getMisses() < 2) Thread.sleep(1);
+            release.countDown();
+            final ExecutionException firstError = Assertions.assertThrows(ExecutionException.class, first::get);
+            Assertions.assertSame(gone, firstError.getCause());
+            final ExecutionException secondError = Assertions.assertThrows(ExecutionException.class, second::get);
+            Assertions.assertSame(gone, secondError.getCause());
+            Assertions.assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
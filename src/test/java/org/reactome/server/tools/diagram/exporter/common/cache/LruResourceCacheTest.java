@@ -0,0 +1,51 @@
+package org.reactome.server.tools.diagram.exporter.common.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LruResourceCacheTest {
+
+    @Test
+    public void testVersionChangeIsAMiss() {
+        final ResourceCache<String, String> cache = new LruResourceCache<>(100);
+        cache.put("a", 1L, "A1", 10);
+        Assertions.assertEquals("A1", cache.get("a", 1L));
+        Assertions.assertNull(cache.get("a", 2L));
+        cache.put("a", 2L, "A2", 10);
+        Assertions.assertEquals("A2", cache.get("a", 2L));
+        final CacheStats stats = cache.getStats();
+        Assertions.assertEquals(2, stats.getHits());
+        Assertions.assertEquals(1, stats.getMisses());
+        Assertions.assertEquals(1, stats.getSize());
+        Assertions.assertEquals(10, stats.getWeight());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        final ResourceCache<String, String> cache = new LruResourceCache<>(30);
+        cache.put("a", 0, "A", 10);
+        cache.put("b", 0, "B", 10);
+        cache.put("c", 0, "C", 10);
+        // a becomes the most recently used
+        Assertions.assertEquals("A", cache.get("a", 0));
+        cache.put("d", 0, "D", 15);
+        Assertions.assertEquals("A", cache.get("a", 0));
+        Assertions.assertNull(cache.get("b", 0));
+        Assertions.assertNull(cache.get("c", 0));
+        Assertions.assertEquals("D", cache.get("d", 0));
+        Assertions.assertEquals(2, cache.getStats().getEvictions());
+        Assertions.assertEquals(25, cache.getStats().getWeight());
+    }
+
+    @Test
+    public void testValuesHeavierThanTheCacheAreNotStored() {
+        final ResourceCache<String, String> cache = new LruResourceCache<>(30);
+        cache.put("a", 0, "A", 10);
+        cache.put("b", 0, "B", 31);
+        Assertions.assertNull(cache.get("b", 0));
+        Assertions.assertEquals("A", cache.get("a", 0));
+        cache.invalidate("a");
+        Assertions.assertNull(cache.get("a", 0));
+        Assertions.assertEquals(0, cache.getStats().getWeight());
+    }
+}
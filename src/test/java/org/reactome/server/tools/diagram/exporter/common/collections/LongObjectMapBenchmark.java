@@ -0,0 +1,57 @@
+package org.reactome.server.tools.diagram.exporter.common.collections;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares building and querying a {@link LongObjectMap} against a
+ * HashMap&lt;Long, Object&gt; with the same random dbIds. Both maps are
+ * presized. It is not a test, run it from the IDE or with
+ * <code>java -cp target/classes:target/test-classes
+ * org.reactome.server.tools.diagram.exporter.common.collections.LongObjectMapBenchmark</code>
+ */
+public class LongObjectMapBenchmark {
+
+    private static final int SIZE = 20_000;
+    private static final int ITERATIONS = 200;
+    private static final int ROUNDS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        final long[] ids = new long[SIZE];
+        final Random random = new Random(3);
+        for (int i = 0; i < SIZE; i++) ids[i] = 1_000_000L + random.nextInt(9_000_000);
+        final Object value = new Object();
+        long found = 0;
+        // first rounds are warm up
+        for (int round = 0; round < ROUNDS; round++) {
+            long time = System.nanoTime();
+            long allocated = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < ITERATIONS; i++) {
+                final Map<Long, Object> map = new HashMap<>(2 * SIZE);
+                for (long id : ids) map.put(id, value);
+                for (long id : ids) if (map.get(id) != null) found++;
+            }
+            report("HashMap", time, allocated);
+            time = System.nanoTime();
+            allocated = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < ITERATIONS; i++) {
+                final LongObjectMap<Object> map = new LongObjectMap<>(SIZE);
+                for (long id : ids) map.put(id, value);
+                for (long id : ids) if (map.get(id) != null) found++;
+            }
+            report("LongObjectMap", time, allocated);
+        }
+        // keeps the lookups from being optimized away
+        System.out.println(found + " lookups");
+    }
+
+    private static void report(String name, long time, long allocated) {
+        System.out.printf("%-14s %8.1f us/op %6d KB/op%n", name,
+                (System.nanoTime() - time) / (ITERATIONS * 1e3),
+                (THREADS.getCurrentThreadAllocatedBytes() - allocated) / ITERATIONS / 1024);
+    }
+}
@@ -0,0 +1,81 @@
+package org.reactome.server.tools.diagram.exporter.common.collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class LongObjectMapTest {
+
+    @Test
+    public void testSameContentAsHashMap() {
+        final Random random = new Random(1);
+        final LongObjectMap<String> map = new LongObjectMap<>();
+        final Map<Long, String> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            // few distinct keys, so some are replaced, including 0 and negatives
+            final long key = random.nextInt(4000) - 2000;
+            Assertions.assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+        }
+        Assertions.assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> Assertions.assertEquals(value, map.get(key)));
+        Assertions.assertNull(map.get(5000));
+        Assertions.assertFalse(map.containsKey(-5000));
+        Assertions.assertEquals(-1, map.indexOf(5000));
+    }
+
+    @Test
+    public void testInsertionOrder() {
+        final LongObjectMap<List<String>> map = new LongObjectMap<>(1);
+        final long[] keys = {42, 7, Long.MIN_VALUE, 0, 1L << 40, 7, 42};
+        for (long key : keys) map.computeIfAbsent(key, k -> new ArrayList<>()).add("x" + key);
+        Assertions.assertArrayEquals(new long[]{42, 7, Long.MIN_VALUE, 0, 1L << 40}, map.keys());
+        Assertions.assertEquals(2, map.get(42).size());
+        Assertions.assertEquals(1, map.indexOf(7));
+        Assertions.assertEquals(Long.MIN_VALUE, map.keyAt(2));
+        final List<Long> visited = new ArrayList<>();
+        map.forEach((key, value) -> visited.add(key));
+        Assertions.assertEquals(List.of(42L, 7L, Long.MIN_VALUE, 0L, 1L << 40), visited);
+        Assertions.assertEquals(map.get(0), new ArrayList<>(map.values()).get(3));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> map.values().clear());
+    }
+
+    @Test
+    public void testUnmodifiableView() {
+        final LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(3, "a");
+        final ReadOnlyLongObjectMap<String> view = LongObjectMap.unmodifiable(map);
+        Assertions.assertFalse(view instanceof LongObjectMap);
+        map.put(4, "b");
+        Assertions.assertEquals(2, view.size());
+        Assertions.assertEquals("b", view.get(4));
+        Assertions.assertEquals(1, view.indexOf(4));
+        Assertions.assertArrayEquals(new long[]{3, 4}, view.keys());
+        Assertions.assertEquals(List.of("a", "b"), new ArrayList<>(view.values()));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> view.values().clear());
+        Assertions.assertSame(view, LongObjectMap.unmodifiable(view));
+    }
+
+    @Test
+    public void testLongHashSet() {
+        final Random random = new Random(2);
+        final LongHashSet set = new LongHashSet();
+        final Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            final long value = random.nextInt(3000) - 1000;
+            Assertions.assertEquals(expected.add(value), set.add(value));
+        }
+        Assertions.assertEquals(expected.size(), set.size());
+        for (long value = -1500; value < 2500; value++)
+            Assertions.assertEquals(expected.contains(value), set.contains(value));
+        final Set<Long> values = new HashSet<>();
+        for (long value : set.toArray()) values.add(value);
+        Assertions.assertEquals(expected, values);
+    }
+}
@@ -0,0 +1,82 @@
+package org.reactome.server.tools.diagram.exporter.raster;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.tools.diagram.exporter.BaseTest;
+import org.reactome.server.tools.diagram.exporter.raster.api.RasterArgs;
+import org.reactome.server.tools.diagram.exporter.raster.profiles.ColorProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Renders the same set of diagrams from several threads at the same time and
+ * checks that the output is exactly the same as when they are rendered one by
+ * one.
+ */
+public class ConcurrentExportTest extends BaseTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 4;
+
+    private static final Map<String, Supplier<RasterArgs>> CASES = new LinkedHashMap<>();
+
+    static {
+        for (String stId : Arrays.asList("R-HSA-5687128", "R-HSA-376176", "R-HSA-69620", "R-HSA-109606")) {
+            CASES.put(stId + ".png", () -> new RasterArgs(stId, "png"));
+            CASES.put(stId + ".jpg", () -> {
+                final RasterArgs args = new RasterArgs(stId, "jpg");
+                args.setProfiles(new ColorProfiles("standard", null, null));
+                return args;
+            });
+        }
+        CASES.put("R-HSA-432047-flags.png", () -> {
+            final RasterArgs args = new RasterArgs("R-HSA-432047", "png");
+            args.setFlags(List.of("R-ALL-879874"));
+            return args;
+        });
+        CASES.put("R-HSA-109606-overrepresentation.png", () -> {
+            final RasterArgs args = new RasterArgs("R-HSA-109606", "png");
+            args.setToken(TestUtils.TOKEN_OVER_1);
+            return args;
+        });
+        CASES.put("R-HSA-382551-ehld.png", () -> new RasterArgs("R-HSA-382551", "png"));
+    }
+
+    @Test
+    public void testConcurrentOutputIsIdentical() throws Exception {
+        final Map<String, byte[]> expected = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<RasterArgs>> entry : CASES.entrySet())
+            expected.put(entry.getKey(), export(entry.getValue().get()));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<String> names = new ArrayList<>();
+            final List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < ROUNDS; i++) {
+                for (Map.Entry<String, Supplier<RasterArgs>> entry : CASES.entrySet()) {
+                    names.add(entry.getKey());
+                    futures.add(executor.submit(() -> export(entry.getValue().get())));
+                }
+            }
+            for (int i = 0; i < futures.size(); i++)
+                Assertions.assertArrayEquals(expected.get(names.get(i)), futures.get(i).get(), names.get(i));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] export(RasterArgs args) throws Exception {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        TestUtils.getExporter().export(args, os);
+        return os.toByteArray();
+    }
+}
@@ -63,6 +63,10 @@ public class TestUtils {
         EXPORTER = new RasterExporter(DIAGRAM_PATH, EHLD_PATH, ANALYSIS_PATH, SVG_SUMMARY);
     }
 
+    public static RasterExporter getExporter() {
+        return EXPORTER;
+    }
+
     public static AnalysisStoredResult getResult(String token) {
         return TOKEN_UTILS.getFromToken(token);
     }
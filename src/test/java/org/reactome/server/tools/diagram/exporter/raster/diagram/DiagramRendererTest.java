@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import org.reactome.server.analysis.core.result.AnalysisStoredResult;
 import org.reactome.server.tools.diagram.data.graph.Graph;
 import org.reactome.server.tools.diagram.data.layout.Diagram;
+import org.reactome.server.tools.diagram.data.layout.NodeProperties;
 import org.reactome.server.tools.diagram.exporter.BaseTest;
 import org.reactome.server.tools.diagram.exporter.common.ResourcesFactory;
 import org.reactome.server.tools.diagram.exporter.common.analysis.AnalysisException;
@@ -16,8 +17,13 @@ import org.reactome.server.tools.diagram.exporter.common.profiles.factory.Diagra
 import org.reactome.server.tools.diagram.exporter.raster.RasterExporter;
 import org.reactome.server.tools.diagram.exporter.raster.TestUtils;
 import org.reactome.server.tools.diagram.exporter.raster.api.RasterArgs;
+import org.reactome.server.tools.diagram.exporter.raster.diagram.common.DiagramIndex;
+import org.reactome.server.tools.diagram.exporter.raster.diagram.renderables.RenderableProcessNode;
 import org.reactome.server.tools.diagram.exporter.raster.profiles.ColorProfiles;
 
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
@@ -27,6 +33,8 @@ import java.util.stream.IntStream;
 
 public class DiagramRendererTest extends BaseTest {
 
+    private static final String DIAGRAM_PATH = "src/test/resources/org/reactome/server/tools/diagram/exporter/diagram";
+
     @Test
     public void testSimpleDiagram() {
         // These diagrams contain all the types of nodes:
@@ -313,7 +321,6 @@ public class DiagramRendererTest extends BaseTest {
 
     @Test
     public void fromDiagramObject() {
-        final String DIAGRAM_PATH = "src/test/resources/org/reactome/server/tools/diagram/exporter/diagram";
         try {
             final String stId = "R-HSA-432047";
             final Diagram diagram = ResourcesFactory.getDiagram(DIAGRAM_PATH, stId);
@@ -325,6 +332,98 @@ public class DiagramRendererTest extends BaseTest {
         }
     }
 
+    @Test
+    public void testEnrichedSubpathwayBackground() throws Exception {
+        // Only expression and GSA paint the right side of subpathway boxes
+        // over the background, overrepresentation keeps the background fill
+        final String stId = "R-HSA-168164";
+        final Diagram diagram = ResourcesFactory.getDiagram(DIAGRAM_PATH, stId);
+        final Graph graph = ResourcesFactory.getGraph(DIAGRAM_PATH, stId);
+        final RasterArgs args = new RasterArgs(stId, "png");
+        final BufferedImage image = new DiagramRenderer(diagram, graph, args, TestUtils.getResult(TestUtils.TOKEN_OVER_1)).render();
+        final double factor = args.getFactor();
+        final double offset = -Math.ceil(-args.getMargin() * factor);
+        final Color fill = args.getProfiles().getDiagramSheet().getProcessNode().getLighterFill();
+        final Color enrichment = args.getProfiles().getAnalysisSheet().getEnrichment().getGradient().getMax();
+        int checked = 0;
+        for (RenderableProcessNode node : DiagramIndex.of(diagram).getPathwaysById().values()) {
+            final NodeProperties prop = node.getNode().getProp();
+            if (node.isFadeOut() || prop.getWidth() < 20) continue;
+            // middle of the right padding of the box
+            final int x = (int) ((prop.getX() + prop.getWidth() - 5) * factor + offset);
+            final int y = (int) ((prop.getY() + prop.getHeight() / 2) * factor + offset);
+            final int rgb = image.getRGB(x, y);
+            Assertions.assertTrue(rgb == fill.getRGB() || rgb == enrichment.getRGB(),
+                    String.format("%s at (%d, %d) is %08x", node.getNode().getDisplayName(), x, y, rgb));
+            checked++;
+        }
+        Assertions.assertTrue(checked > 0);
+    }
+
+    @Test
+    public void testStaticLayersCache() throws Exception {
+        final String stId = "R-HSA-5687128";
+        final Diagram diagram = ResourcesFactory.getDiagram(DIAGRAM_PATH, stId);
+        final Graph graph = ResourcesFactory.getGraph(DIAGRAM_PATH, stId);
+        final RasterArgs args = new RasterArgs(stId, "png")
+                .setFlags(Collections.singletonList("R-HSA-5687026"));
+        try {
+            // no cache, single pass
+            DiagramRenderer.setStaticLayersCacheSize(0);
+            final BufferedImage direct = new DiagramRenderer(diagram, graph, args, null).render();
+            Assertions.assertNull(DiagramRenderer.getStaticLayersCacheStats());
+            // too small for the layers, single pass too
+            DiagramRenderer.setStaticLayersCacheSize(1024);
+            assertSameImage(direct, new DiagramRenderer(diagram, graph, args, null).render());
+            Assertions.assertEquals(0, DiagramRenderer.getStaticLayersCacheStats().getMisses());
+            DiagramRenderer.setStaticLayersCacheSize(64L * 1024 * 1024);
+            final BufferedImage miss = new DiagramRenderer(diagram, graph, args, null).render();
+            Assertions.assertEquals(1, DiagramRenderer.getStaticLayersCacheStats().getMisses());
+            Assertions.assertEquals(1, DiagramRenderer.getStaticLayersCacheStats().getSize());
+            final BufferedImage hit = new DiagramRenderer(diagram, graph, args, null).render();
+            Assertions.assertEquals(1, DiagramRenderer.getStaticLayersCacheStats().getHits());
+            assertSameImage(direct, miss);
+            assertSameImage(direct, hit);
+        } finally {
+            DiagramRenderer.setStaticLayersCacheSize(64L * 1024 * 1024);
+        }
+    }
+
+    @Test
+    public void testTiledImageEqualsSingleImage() throws Exception {
+        final String stId = "R-HSA-5687128";
+        final Diagram diagram = ResourcesFactory.getDiagram(DIAGRAM_PATH, stId);
+        final Graph graph = ResourcesFactory.getGraph(DIAGRAM_PATH, stId);
+        // expression clips the text of the nodes, which must not clear the clip of the strip
+        final AnalysisStoredResult result = TestUtils.getResult(TestUtils.TOKEN_EXPRESSION_1);
+        final RasterArgs args = new RasterArgs(stId, "png").setQuality(8).setTiled(true);
+        final DiagramRenderer renderer = new DiagramRenderer(diagram, graph, args, result);
+        final BufferedImage image = renderer.render();
+        final RenderedImage tiled = renderer.renderTiled();
+        Assertions.assertTrue(tiled.getNumYTiles() > 1);
+        assertSameImage(image, new BufferedImage(tiled.getColorModel(), tiled.copyData(null), false, null));
+    }
+
+    /**
+     * Images painted in several passes, like the static layers composited
+     * from a transparent image, can round antialiased pixels differently.
+     */
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        Assertions.assertEquals(expected.getWidth(), actual.getWidth());
+        Assertions.assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                final int a = expected.getRGB(x, y);
+                final int b = actual.getRGB(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    final int difference = Math.abs((a >>> shift & 0xff) - (b >>> shift & 0xff));
+                    if (difference > 2)
+                        Assertions.fail(String.format("Pixel (%d, %d) is %08x, expected %08x", x, y, b, a));
+                }
+            }
+        }
+    }
+
     @Test
     public void testSelectionAndFlagging() {
         // R-HSA-5205682.svg?sel=R-HSA-1267988,992745&flg=MFN2
@@ -0,0 +1,63 @@
+package org.reactome.server.tools.diagram.exporter.raster.diagram.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+import org.reactome.server.analysis.core.result.model.FoundElements;
+import org.reactome.server.analysis.core.result.model.FoundEntity;
+import org.reactome.server.tools.diagram.exporter.BaseTest;
+import org.reactome.server.tools.diagram.exporter.raster.TestUtils;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AnalysisIdentifierIndexTest extends BaseTest {
+
+    private static final String STID = "R-HSA-168164";
+    private static final String RESOURCE = "TOTAL";
+
+    @Test
+    public void testPathwaysAreShared() {
+        final AnalysisStoredResult result = TestUtils.getResult(TestUtils.TOKEN_OVER_1);
+        final Map<String, FoundEntity> entities = AnalysisIdentifierIndex.getEntities(result, STID, RESOURCE);
+        Assertions.assertNotNull(entities);
+        Assertions.assertFalse(entities.isEmpty());
+        Assertions.assertSame(entities, AnalysisIdentifierIndex.getEntities(result, STID, RESOURCE));
+    }
+
+    @Test
+    public void testElementsAreLoadedOnce() {
+        final FoundElements elements = TestUtils.getResult(TestUtils.TOKEN_OVER_1).getFoundElmentsForPathway(STID, RESOURCE);
+        final AnalysisIdentifierIndex index = AnalysisIdentifierIndex.of(new Object());
+        final AtomicInteger loads = new AtomicInteger();
+        final Map<String, FoundEntity> entities = index.get(STID, () -> {
+            loads.incrementAndGet();
+            return elements;
+        });
+        Assertions.assertSame(entities, index.get(STID, () -> {
+            loads.incrementAndGet();
+            return elements;
+        }));
+        Assertions.assertEquals(1, loads.get());
+        // pathways without elements are not looked up again either
+        Assertions.assertNull(index.get("none", () -> null));
+        Assertions.assertNull(index.get("none", () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testIndexIsReleasedWithTheResult() throws InterruptedException {
+        Object owner = new Object();
+        AnalysisIdentifierIndex.of(owner).get(STID, () -> null);
+        final int size = AnalysisIdentifierIndex.size();
+        owner = null;
+        for (int i = 0; i < 50 && AnalysisIdentifierIndex.size() >= size; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(AnalysisIdentifierIndex.size() < size);
+    }
+}
@@ -0,0 +1,82 @@
+package org.reactome.server.tools.diagram.exporter.raster.diagram.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactome.server.tools.diagram.data.DiagramFactory;
+import org.reactome.server.tools.diagram.data.graph.EntityNode;
+import org.reactome.server.tools.diagram.data.graph.Graph;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class GraphLeavesTest {
+
+    private static final String DIAGRAM_PATH = "src/test/resources/org/reactome/server/tools/diagram/exporter/diagram";
+
+    @Test
+    public void testSameLeavesAsRecursion() throws Exception {
+        final File[] files = new File(DIAGRAM_PATH).listFiles((dir, name) -> name.endsWith(".graph.json"));
+        Assertions.assertNotNull(files);
+        for (File file : files) {
+            final Graph graph = DiagramFactory.getGraph(new String(Files.readAllBytes(file.toPath())));
+            final Map<Long, EntityNode> index = new HashMap<>();
+            graph.getNodes().forEach(node -> index.put(node.getDbId(), node));
+            final GraphLeaves leaves = GraphLeaves.of(graph);
+            for (EntityNode node : graph.getNodes()) {
+                // the order of the HashSet is kept, expression stripes depend on it
+                Assertions.assertEquals(new ArrayList<>(getLeaves(node, index)), toDbIds(leaves, leaves.getLeaves(node.getDbId())),
+                        file.getName() + " " + node.getDbId());
+            }
+        }
+    }
+
+    @Test
+    public void testCycles() throws Exception {
+        // 1 -> 2 -> 1 -> ..., 3 -> 3, 4 -> 4 and 5 -> 1
+        final String json = "{\"dbId\": 1000, \"stId\": \"R-HSA-1000\", \"speciesName\": \"Homo sapiens\", \"nodes\": ["
+                + node(1, 2, 10) + ", " + node(2, 1, 11) + ", " + node(3, 3, 12) + ", " + node(4, 4) + ", " + node(5, 1)
+                + ", " + node(10) + ", " + node(11) + ", " + node(12) + "], \"edges\": [], \"subpathways\": []}";
+        // leaves do not depend on the order entities are requested
+        final long[][] orders = {{1, 2, 3, 4, 5}, {2, 1, 5, 4, 3}, {5, 4, 3, 2, 1}};
+        for (long[] order : orders) {
+            final GraphLeaves leaves = GraphLeaves.of(DiagramFactory.getGraph(json));
+            final Map<Long, Set<Long>> found = new HashMap<>();
+            for (long dbId : order) found.put(dbId, new HashSet<>(toDbIds(leaves, leaves.getLeaves(dbId))));
+            Assertions.assertEquals(Set.of(10L, 11L), found.get(1L));
+            Assertions.assertEquals(Set.of(10L, 11L), found.get(2L));
+            Assertions.assertEquals(Set.of(12L), found.get(3L));
+            Assertions.assertEquals(Set.of(), found.get(4L));
+            Assertions.assertEquals(Set.of(10L, 11L), found.get(5L));
+        }
+    }
+
+    /**
+     * The recursion DiagramAnalysis used before GraphLeaves.
+     */
+    private static Set<Long> getLeaves(EntityNode node, Map<Long, EntityNode> index) {
+        if (node.getChildren() == null || node.getChildren().isEmpty())
+            return Collections.singleton(node.getDbId());
+        final Set<Long> set = new HashSet<>();
+        for (Long dbId : node.getChildren()) {
+            final EntityNode entityNode = index.get(dbId);
+            if (entityNode != null) set.addAll(getLeaves(entityNode, index));
+        }
+        return set;
+    }
+
+    private static List<Long> toDbIds(GraphLeaves leaves, int[] positions) {
+        final List<Long> dbIds = new ArrayList<>(positions.length);
+        for (int position : positions) dbIds.add(leaves.getNode(position).getDbId());
+        return dbIds;
+    }
+
+    private static String node(long dbId, long... children) {
+        final String schemaClass = children.length == 0 ? "EntityWithAccessionedSequence" : "Complex";
+        final String childList = Arrays.stream(children).mapToObj(String::valueOf).collect(Collectors.joining(", "));
+        return String.format("{\"dbId\": %d, \"stId\": \"R-HSA-%d\", \"displayName\": \"E%d\", \"schemaClass\": \"%s\", "
+                + "\"speciesId\": 48887, \"identifier\": \"P%05d\"%s}", dbId, dbId, dbId, schemaClass, dbId,
+                children.length == 0 ? "" : ", \"children\": [" + childList + "]");
+    }
+}
@@ -0,0 +1,121 @@
+package org.reactome.server.tools.diagram.exporter.raster.gif;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AnimatedGifEncoderTest {
+
+    @Test
+    public void testLowColourFramesAreLossless() throws IOException {
+        final List<BufferedImage> frames = new ArrayList<>();
+        for (int i = 0; i < 5; i++) frames.add(frame(i, 200));
+        final List<BufferedImage> decoded = decode(encode(frames));
+        Assertions.assertEquals(frames.size(), decoded.size());
+        for (int i = 0; i < frames.size(); i++)
+            assertSamePixels(frames.get(i), decoded.get(i));
+    }
+
+    @Test
+    public void testOptimizedFramesOnlyContainChanges() throws IOException {
+        final List<BufferedImage> frames = new ArrayList<>();
+        for (int i = 0; i < 5; i++) frames.add(frame(i, 200));
+        final byte[] full = encode(frames, false);
+        final byte[] optimized = encode(frames, true);
+        Assertions.assertTrue(optimized.length < full.length);
+        final List<BufferedImage> decoded = decode(optimized);
+        Assertions.assertEquals(frames.size(), decoded.size());
+        for (int i = 0; i < frames.size(); i++)
+            assertSamePixels(frames.get(i), decoded.get(i));
+    }
+
+    @Test
+    public void testManyColoursFallBackToQuantizer() throws IOException {
+        final BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 64; x++)
+            for (int y = 0; y < 64; y++)
+                image.setRGB(x, y, x << 18 | y << 10 | (x + y) << 1);
+        final List<BufferedImage> decoded = decode(encode(List.of(image)));
+        Assertions.assertEquals(1, decoded.size());
+        Assertions.assertEquals(64, decoded.get(0).getWidth());
+        Assertions.assertEquals(64, decoded.get(0).getHeight());
+    }
+
+    private static BufferedImage frame(int t, int size) {
+        final BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, size, size);
+        graphics.setColor(new Color(40 * t, 80, 255 - 40 * t));
+        graphics.fillOval(10 + 10 * t, 20, 80, 60);
+        graphics.setColor(Color.BLACK);
+        graphics.drawString("Sample " + t, 10, size - 20);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] encode(List<BufferedImage> frames) {
+        return encode(frames, false);
+    }
+
+    private static byte[] encode(List<BufferedImage> frames, boolean optimize) {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final AnimatedGifEncoder encoder = new AnimatedGifEncoder();
+        encoder.setOptimize(optimize);
+        encoder.setDelay(1000);
+        encoder.setRepeat(0);
+        encoder.start(os);
+        final GifFramePipeline pipeline = new GifFramePipeline(encoder);
+        frames.forEach(pipeline::addFrame);
+        pipeline.finish();
+        return os.toByteArray();
+    }
+
+    /**
+     * Decodes every frame, drawing it over the previous one, as frames can be
+     * smaller than the image.
+     */
+    private static List<BufferedImage> decode(byte[] gif) throws IOException {
+        final ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        reader.setInput(ImageIO.createImageInputStream(new ByteArrayInputStream(gif)));
+        final List<BufferedImage> images = new ArrayList<>();
+        BufferedImage canvas = null;
+        for (int i = 0; i < reader.getNumImages(true); i++) {
+            final BufferedImage frame = reader.read(i);
+            final Element descriptor = (Element) ((Element) reader.getImageMetadata(i).getAsTree("javax_imageio_gif_image_1.0"))
+                    .getElementsByTagName("ImageDescriptor").item(0);
+            final int x = Integer.parseInt(descriptor.getAttribute("imageLeftPosition"));
+            final int y = Integer.parseInt(descriptor.getAttribute("imageTopPosition"));
+            final BufferedImage image = new BufferedImage(
+                    canvas == null ? frame.getWidth() : canvas.getWidth(),
+                    canvas == null ? frame.getHeight() : canvas.getHeight(),
+                    BufferedImage.TYPE_INT_RGB);
+            final Graphics2D graphics = image.createGraphics();
+            if (canvas != null) graphics.drawImage(canvas, 0, 0, null);
+            graphics.drawImage(frame, x, y, null);
+            graphics.dispose();
+            images.add(canvas = image);
+        }
+        return images;
+    }
+
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        Assertions.assertEquals(expected.getWidth(), actual.getWidth());
+        Assertions.assertEquals(expected.getHeight(), actual.getHeight());
+        for (int x = 0; x < expected.getWidth(); x++)
+            for (int y = 0; y < expected.getHeight(); y++)
+                Assertions.assertEquals(expected.getRGB(x, y) & 0xffffff, actual.getRGB(x, y) & 0xffffff,
+                        "pixel " + x + "," + y);
+    }
+}
@@ -0,0 +1,126 @@
+package org.reactome.server.tools.diagram.exporter.raster.png;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class PngWriterTest {
+
+    @Test
+    public void testEveryFilterIsLossless() throws IOException {
+        // 600 x 400 RGBA is larger than a compression block
+        final BufferedImage image = image(600, 400, BufferedImage.TYPE_INT_ARGB);
+        for (PngWriter.Filter filter : PngWriter.Filter.values()) {
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            final PngWriter writer = new PngWriter(os, image.getWidth(), image.getHeight(), true);
+            writer.setFilter(filter);
+            writer.write(image);
+            assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(os.toByteArray())));
+        }
+    }
+
+    @Test
+    public void testRowsAreCompressedInParallel() throws IOException {
+        final BufferedImage image = image(1000, 700, BufferedImage.TYPE_INT_RGB);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final PngWriter writer = new PngWriter(os, image.getWidth(), image.getHeight(), false);
+        writer.setLevel(9);
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            writer.setExecutor(executor, 2);
+            final int[] row = new int[image.getWidth()];
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.getRGB(0, y, row.length, 1, row, 0, row.length);
+                writer.writeRow(row);
+            }
+            writer.finish();
+        } finally {
+            executor.shutdown();
+        }
+        final BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(os.toByteArray()));
+        Assertions.assertFalse(decoded.getColorModel().hasAlpha());
+        assertSamePixels(image, decoded);
+    }
+
+    @Test
+    public void testSmallImagesAreCompressedInTheCallingThread() throws IOException {
+        final BufferedImage image = image(200, 100, BufferedImage.TYPE_INT_ARGB);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final PngWriter writer = new PngWriter(os, image.getWidth(), image.getHeight(), true);
+        writer.setExecutor(command -> Assertions.fail("small images must not use the executor"), 1);
+        writer.write(image);
+        assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(os.toByteArray())));
+    }
+
+    @Test
+    public void testPaletteWithFewColoursIsLossless() throws IOException {
+        final BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(255, 0, 0, 128));
+        graphics.fillRect(20, 20, 100, 100);
+        graphics.setColor(Color.BLUE);
+        graphics.drawLine(0, 0, 300, 200);
+        graphics.dispose();
+        final PngPalette palette = PngPalette.of(image);
+        Assertions.assertTrue(palette.isExact());
+        Assertions.assertTrue(palette.hasAlpha());
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        PngWriter.writeIndexed(image, os);
+        assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(os.toByteArray())));
+    }
+
+    @Test
+    public void testPaletteWithManyColoursIsQuantized() throws IOException {
+        final BufferedImage image = image(400, 300, BufferedImage.TYPE_INT_ARGB);
+        final PngPalette palette = PngPalette.of(image);
+        Assertions.assertFalse(palette.isExact());
+        Assertions.assertTrue(palette.getColors().length <= 256);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        PngWriter.writeIndexed(image, os);
+        final BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(os.toByteArray()));
+        for (int y = 0; y < image.getHeight(); y++)
+            for (int x = 0; x < image.getWidth(); x++)
+                for (int shift = 0; shift < 32; shift += 8) {
+                    final int expected = image.getRGB(x, y) >>> shift & 0xff;
+                    final int actual = decoded.getRGB(x, y) >>> shift & 0xff;
+                    // transparent pixels may have any colour
+                    if (image.getRGB(x, y) >>> 24 != 0)
+                        Assertions.assertTrue(Math.abs(expected - actual) < 32);
+                }
+    }
+
+    @Test
+    public void testMissingRowsAreAnError() throws IOException {
+        final PngWriter writer = new PngWriter(new ByteArrayOutputStream(), 10, 10, true);
+        writer.writeRow(new int[10]);
+        Assertions.assertThrows(IllegalStateException.class, writer::finish);
+    }
+
+    private BufferedImage image(int width, int height, int type) {
+        final BufferedImage image = new BufferedImage(width, height, type);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setPaint(new GradientPaint(0, 0, Color.YELLOW, width, height, new Color(0, 0, 255, 128)));
+        graphics.fillOval(10, 10, width - 20, height - 20);
+        graphics.setColor(Color.BLACK);
+        graphics.drawString("Reactome", width / 2, height / 2);
+        graphics.dispose();
+        return image;
+    }
+
+    private void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        Assertions.assertEquals(expected.getWidth(), actual.getWidth());
+        Assertions.assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++)
+            for (int x = 0; x < expected.getWidth(); x++)
+                Assertions.assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+    }
+}
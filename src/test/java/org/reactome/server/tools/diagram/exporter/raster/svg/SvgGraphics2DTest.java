@@ -0,0 +1,49 @@
+package org.reactome.server.tools.diagram.exporter.raster.svg;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class SvgGraphics2DTest {
+
+    @Test
+    public void testRepeatedStylesShareAClass() throws IOException {
+        final StringWriter writer = new StringWriter();
+        final SvgGraphics2D graphics = new SvgGraphics2D(writer, new Rectangle2D.Double(0, 0, 100, 100), 2);
+        graphics.setPaint(Color.RED);
+        graphics.fill(new Rectangle2D.Double(1, 1, 10, 10));
+        graphics.fill(new Rectangle2D.Double(20, 1, 10, 10));
+        graphics.setPaint(Color.BLUE);
+        graphics.fill(new Rectangle2D.Double(40, 1, 10, 10));
+        graphics.finish();
+        final String svg = writer.toString();
+        Assertions.assertTrue(svg.contains("<rect class=\"s0\" x=\"1\" y=\"1\" width=\"10\" height=\"10\"/>"));
+        Assertions.assertTrue(svg.contains("<rect class=\"s0\" x=\"20\""));
+        Assertions.assertTrue(svg.contains("<rect class=\"s1\" x=\"40\""));
+        Assertions.assertTrue(svg.contains(".s0{fill:#ff0000}"));
+        Assertions.assertTrue(svg.contains(".s1{fill:#0000ff}"));
+        Assertions.assertTrue(svg.trim().endsWith("</svg>"));
+    }
+
+    @Test
+    public void testCoordinatesAreTransformedAndRounded() throws IOException {
+        final StringWriter writer = new StringWriter();
+        final SvgGraphics2D graphics = new SvgGraphics2D(writer, new Rectangle2D.Double(0, 0, 100, 100), 2);
+        graphics.scale(2, 2);
+        graphics.setStroke(new BasicStroke(1.5f));
+        graphics.draw(new Line2D.Double(0.5, -0.001, 10 / 3.0, 1));
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 8));
+        graphics.drawString("a < b & c", 1, 2);
+        graphics.finish();
+        final String svg = writer.toString();
+        Assertions.assertTrue(svg.contains("d=\"M1 0L6.67 2\""));
+        Assertions.assertTrue(svg.contains("stroke-width:3;"));
+        Assertions.assertTrue(svg.contains("x=\"2\" y=\"4\">a &lt; b &amp; c</text>"));
+        Assertions.assertTrue(svg.contains("font-size:16"));
+    }
+}